@@ -16,9 +16,12 @@ import ru.practicum.exception.ConflictException;
 import ru.practicum.exception.ValidationException;
 import ru.practicum.receive.ReceiveService;
 import ru.practicum.user.model.User;
+import ru.practicum.views.ViewsService;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 
 @Slf4j
@@ -29,6 +32,7 @@ public class CommentServiceImpl implements CommentService {
 
     private final ReceiveService receiveService;
     private final CommentRepository commentRepository;
+    private final ViewsService viewsService;
 
     @Override
     @Transactional
@@ -40,7 +44,7 @@ public class CommentServiceImpl implements CommentService {
         Comment comment = CommentMapper.returnComment(commentCreateDto, user,event);
         comment = commentRepository.save(comment);
 
-        return CommentMapper.returnCommentDto(comment);
+        return setViews(CommentMapper.returnCommentDto(comment));
     }
 
     @Override
@@ -59,7 +63,7 @@ public class CommentServiceImpl implements CommentService {
 
         comment = commentRepository.save(comment);
 
-        return CommentMapper.returnCommentDto(comment);
+        return setViews(CommentMapper.returnCommentDto(comment));
     }
 
     @Override
@@ -118,7 +122,7 @@ public class CommentServiceImpl implements CommentService {
 
         List<Comment> commentList = commentRepository.getComments(startTime, endTime, pageRequest);
 
-        return CommentMapper.returnCommentDtoList(commentList);
+        return setViews(CommentMapper.returnCommentDtoList(commentList));
     }
 
     @Override
@@ -151,4 +155,23 @@ public class CommentServiceImpl implements CommentService {
 
         return CommentMapper.returnCommentShortDtoList(commentList);
     }
-}
\ No newline at end of file
+
+    private CommentDto setViews(CommentDto commentDto) {
+
+        setViews(List.of(commentDto));
+        return commentDto;
+    }
+
+    private List<CommentDto> setViews(List<CommentDto> commentDtos) {
+
+        List<Long> eventIds = new ArrayList<>();
+        for (CommentDto commentDto : commentDtos) {
+            eventIds.add(commentDto.getEvent().getId());
+        }
+        Map<Long, Long> views = viewsService.getViews(eventIds);
+        for (CommentDto commentDto : commentDtos) {
+            commentDto.getEvent().setViews(views.getOrDefault(commentDto.getEvent().getId(), 0L));
+        }
+        return commentDtos;
+    }
+}
@@ -9,17 +9,19 @@ import ru.practicum.event.dto.EventShortDto;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @UtilityClass
 public class CollectionMapper {
 
-    public CompilationDto returnCompilationDto(Compilation compilation) {
+    public CompilationDto returnCompilationDto(Compilation compilation, Map<Long, Long> views) {
 
         List<EventShortDto> eventShortDtoList = EventMapper.returnEventShortDtoList(compilation.getEvents());
 
         Set<EventShortDto> eventShortDtoSet = new HashSet<>();
         for (EventShortDto shortDto : eventShortDtoList) {
+            shortDto.setViews(views.getOrDefault(shortDto.getId(), 0L));
             eventShortDtoSet.add(shortDto);
         }
         return CompilationDto.builder()
@@ -37,11 +39,11 @@ public class CollectionMapper {
                 .build();
     }
 
-    public Set<CompilationDto> returnCompilationDtoSet(Iterable<Compilation> compilations) {
+    public Set<CompilationDto> returnCompilationDtoSet(Iterable<Compilation> compilations, Map<Long, Long> views) {
 
         Set<CompilationDto> result = new HashSet<>();
         for (Compilation compilation : compilations) {
-            result.add(returnCompilationDto(compilation));
+            result.add(returnCompilationDto(compilation, views));
         }
         return result;
     }
@@ -11,13 +11,16 @@ import ru.practicum.compilation.dto.CompilationDto;
 import ru.practicum.compilation.dto.CompilationUpdateDto;
 import ru.practicum.compilation.model.Compilation;
 import ru.practicum.compilation.repository.CompilationRepository;
+import ru.practicum.event.model.Event;
 import ru.practicum.event.repository.EventRepository;
 import ru.practicum.receive.ReceiveService;
+import ru.practicum.views.ViewsService;
 
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -28,6 +31,7 @@ public class CompilationServiceImpl implements CompilationService {
     private final CompilationRepository compilationRepository;
     private final EventRepository eventRepository;
     private final ReceiveService receiveService;
+    private final ViewsService viewsService;
 
     @Override
     @Transactional
@@ -45,7 +49,7 @@ public class CompilationServiceImpl implements CompilationService {
         }
 
         compilation = compilationRepository.save(compilation);
-        return CollectionMapper.returnCompilationDto(compilation);
+        return CollectionMapper.returnCompilationDto(compilation, findViews(List.of(compilation)));
     }
 
     @Override
@@ -78,7 +82,7 @@ public class CompilationServiceImpl implements CompilationService {
         }
 
         compilation = compilationRepository.save(compilation);
-        return CollectionMapper.returnCompilationDto(compilation);
+        return CollectionMapper.returnCompilationDto(compilation, findViews(List.of(compilation)));
     }
 
     @Override
@@ -92,7 +96,7 @@ public class CompilationServiceImpl implements CompilationService {
         } else {
             compilations = compilationRepository.findAll(pageRequest).getContent();;
         }
-        return new ArrayList<>(CollectionMapper.returnCompilationDtoSet(compilations));
+        return new ArrayList<>(CollectionMapper.returnCompilationDtoSet(compilations, findViews(compilations)));
     }
 
     @Override
@@ -100,6 +104,17 @@ public class CompilationServiceImpl implements CompilationService {
 
         Compilation compilation = receiveService.getCompilationOrNotFound(compId);
 
-        return CollectionMapper.returnCompilationDto(compilation);
+        return CollectionMapper.returnCompilationDto(compilation, findViews(List.of(compilation)));
     }
-}
\ No newline at end of file
+
+    private Map<Long, Long> findViews(List<Compilation> compilations) {
+
+        List<Long> eventIds = new ArrayList<>();
+        for (Compilation compilation : compilations) {
+            for (Event event : compilation.getEvents()) {
+                eventIds.add(event.getId());
+            }
+        }
+        return viewsService.getViews(eventIds);
+    }
+}
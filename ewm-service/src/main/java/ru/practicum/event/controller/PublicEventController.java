@@ -42,6 +42,10 @@ public class PublicEventController {
         return eventService.getEventsByPublic(text, categories, paid, rangeStart, rangeEnd, onlyAvailable, sort, from, size, uri, ip);
     }
 
+    /**
+     * Views are unique ips from the stats service as of the last background refresh, up to
+     * {@code ewm.views.refresh-interval-ms} old, so this request itself is counted by a later response.
+     */
     @GetMapping("/{id}")
     @ResponseStatus(value = HttpStatus.OK)
     public EventDto getEventById(@PathVariable Long id, HttpServletRequest request) {
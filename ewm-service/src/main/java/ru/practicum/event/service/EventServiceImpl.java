@@ -1,11 +1,8 @@
 package ru.practicum.event.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.category.model.Category;
@@ -18,7 +15,6 @@ import ru.practicum.event.LocationMapper;
 import ru.practicum.event.dto.*;
 import ru.practicum.event.model.Event;
 import ru.practicum.dto.HitDto;
-import ru.practicum.dto.StatsDto;
 import ru.practicum.event.model.Location;
 import ru.practicum.event.repository.EventRepository;
 import ru.practicum.event.repository.LocationRepository;
@@ -31,6 +27,7 @@ import ru.practicum.request.RequestMapper;
 import ru.practicum.request.dto.RequestDto;
 import ru.practicum.request.repository.RequestRepository;
 import ru.practicum.user.model.User;
+import ru.practicum.views.ViewsService;
 
 
 import java.time.LocalDateTime;
@@ -50,9 +47,7 @@ public class EventServiceImpl implements EventService {
     private final RequestRepository requestRepository;
     private final LocationRepository locationRepository;
     private final StatsClient client;
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
-    public static final LocalDateTime START_HISTORY = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private final ViewsService viewsService;
 
 
     @Override
@@ -75,7 +70,7 @@ public class EventServiceImpl implements EventService {
         PageRequest pageRequest = PageRequest.of(from / size, size);
         List<Event> events = eventRepository.findByInitiatorId(userId, pageRequest);
 
-        return EventMapper.returnEventShortDtoList(events);
+        return setShortViews(EventMapper.returnEventShortDtoList(events));
     }
 
     @Override
@@ -85,7 +80,7 @@ public class EventServiceImpl implements EventService {
         receiveService.getEventOrNotFound(eventId);
         Event event = eventRepository.findByInitiatorIdAndId(userId,eventId);
 
-        return EventMapper.returnEventFullDto(event);
+        return setViews(EventMapper.returnEventFullDto(event));
     }
 
     @Override
@@ -104,7 +99,7 @@ public class EventServiceImpl implements EventService {
 
         Event updateEvent = baseUpdateEvent(event, eventUpdateDto);
 
-        return EventMapper.returnEventFullDto(updateEvent);
+        return setViews(EventMapper.returnEventFullDto(updateEvent));
     }
 
     @Override
@@ -204,7 +199,7 @@ public class EventServiceImpl implements EventService {
 
         Event updateEvent = baseUpdateEvent(event, eventUpdateDto);
 
-        return EventMapper.returnEventFullDto(updateEvent);
+        return setViews(EventMapper.returnEventFullDto(updateEvent));
     }
 
     @Override
@@ -230,7 +225,7 @@ public class EventServiceImpl implements EventService {
         PageRequest pageRequest = PageRequest.of(from / size, size);
         List<Event> events = eventRepository.findEventsByAdminFromParam(users, statesValue, categories,  startTime, endTime, pageRequest);
 
-        return EventMapper.returnEventFullDtoList(events);
+        return setViews(EventMapper.returnEventFullDtoList(events));
     }
 
     @Override
@@ -242,10 +237,8 @@ public class EventServiceImpl implements EventService {
         }
 
         sendInfo(uri, ip);
-        event.setViews(getViewsEventById(event.getId()));
-        eventRepository.save(event);
 
-        return EventMapper.returnEventFullDto(event);
+        return setViews(EventMapper.returnEventFullDto(event));
     }
 
     @Override
@@ -264,12 +257,43 @@ public class EventServiceImpl implements EventService {
         List<Event> events = eventRepository.findEventsByPublicFromParam(text, categories, paid, startTime, endTime, onlyAvailable, sort, pageRequest);
 
         sendInfo(uri, ip);
-        for (Event event : events) {
-            event.setViews(getViewsEventById(event.getId()));
-            eventRepository.save(event);
+
+        return setShortViews(EventMapper.returnEventShortDtoList(events));
+    }
+
+    /**
+     * Views are never read from the events table, every response takes them from the views cache.
+     */
+    private EventDto setViews(EventDto eventDto) {
+
+        setViews(List.of(eventDto));
+        return eventDto;
+    }
+
+    private List<EventDto> setViews(List<EventDto> eventDtos) {
+
+        List<Long> eventIds = new ArrayList<>();
+        for (EventDto eventDto : eventDtos) {
+            eventIds.add(eventDto.getId());
         }
+        Map<Long, Long> views = viewsService.getViews(eventIds);
+        for (EventDto eventDto : eventDtos) {
+            eventDto.setViews(views.getOrDefault(eventDto.getId(), 0L));
+        }
+        return eventDtos;
+    }
+
+    private List<EventShortDto> setShortViews(List<EventShortDto> eventDtos) {
 
-        return EventMapper.returnEventShortDtoList(events);
+        List<Long> eventIds = new ArrayList<>();
+        for (EventShortDto eventDto : eventDtos) {
+            eventIds.add(eventDto.getId());
+        }
+        Map<Long, Long> views = viewsService.getViews(eventIds);
+        for (EventShortDto eventDto : eventDtos) {
+            eventDto.setViews(views.getOrDefault(eventDto.getId(), 0L));
+        }
+        return eventDtos;
     }
 
     private Event baseUpdateEvent(Event event, EventUpdateDto eventUpdateDto) {
@@ -326,17 +350,4 @@ public class EventServiceImpl implements EventService {
                 .build();
         client.addHit(hitDto);
     }
-
-    private Long getViewsEventById(Long eventId) {
-
-        String uri = "/events/" + eventId;
-        ResponseEntity<Object> response = client.findStats(START_HISTORY, LocalDateTime.now(), uri, true);
-        List<StatsDto> result = objectMapper.convertValue(response.getBody(), new TypeReference<>() {});
-
-        if (result.isEmpty()) {
-            return 0L;
-        } else {
-            return result.get(0).getHits();
-        }
-    }
 }
\ No newline at end of file
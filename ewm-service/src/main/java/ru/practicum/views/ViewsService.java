@@ -0,0 +1,9 @@
+package ru.practicum.views;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ViewsService {
+
+    Map<Long, Long> getViews(List<Long> eventIds);
+}
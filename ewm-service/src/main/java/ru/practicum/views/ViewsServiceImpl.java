@@ -0,0 +1,159 @@
+package ru.practicum.views;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.client.StatsClient;
+import ru.practicum.dto.StatsDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps event views outside the events table. Public endpoints read views from here,
+ * cached values are refreshed in the background with batched stats requests, so a view
+ * shows up in responses only after the next refresh. Once the cache is full the least
+ * recently read event makes room for a new one.
+ */
+@Slf4j
+@Service
+public class ViewsServiceImpl implements ViewsService {
+
+    public static final LocalDateTime START_HISTORY = LocalDateTime.of(1970, 1, 1, 0, 0);
+    public static final String EVENT_URI = "/events/";
+    private static final int STATS_BATCH_SIZE = 100;
+
+    private final StatsClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Long, ViewsEntry> views;
+    private final long idleTimeoutMs;
+
+    public ViewsServiceImpl(StatsClient client,
+                            @Value("${ewm.views.cache-size:10000}") int cacheSize,
+                            @Value("${ewm.views.idle-timeout-ms:300000}") long idleTimeoutMs) {
+        this.client = client;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.views = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ViewsEntry> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    @Override
+    public Map<Long, Long> getViews(List<Long> eventIds) {
+
+        Map<Long, Long> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (views) {
+            for (Long eventId : eventIds) {
+                ViewsEntry entry = views.get(eventId);
+                if (entry == null) {
+                    missing.add(eventId);
+                } else {
+                    entry.lastRead = now;
+                    result.put(eventId, entry.views);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            result.putAll(refreshViews(missing));
+        }
+        return result;
+    }
+
+    /**
+     * Asks the stats service only for events not cached yet, cached ones are kept fresh by the scheduled job.
+     */
+    private Map<Long, Long> refreshViews(List<Long> eventIds) {
+
+        Map<Long, Long> result = new HashMap<>();
+        for (int from = 0; from < eventIds.size(); from += STATS_BATCH_SIZE) {
+            result.putAll(findViews(eventIds.subList(from, Math.min(from + STATS_BATCH_SIZE, eventIds.size()))));
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (views) {
+            for (Map.Entry<Long, Long> value : result.entrySet()) {
+                ViewsEntry entry = views.get(value.getKey());
+                if (entry != null) {
+                    entry.views = value.getValue();
+                    entry.lastRead = now;
+                } else {
+                    views.put(value.getKey(), new ViewsEntry(value.getValue(), now));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${ewm.views.refresh-interval-ms:10000}")
+    public void refreshCachedViews() {
+
+        long idleSince = System.currentTimeMillis() - idleTimeoutMs;
+        Map<Long, ViewsEntry> entries;
+        synchronized (views) {
+            views.entrySet().removeIf(entry -> entry.getValue().lastRead < idleSince);
+            // a copy to update entries without a lookup, which would move them up the eviction order
+            entries = new HashMap<>(views);
+        }
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        List<Long> eventIds = new ArrayList<>(entries.keySet());
+        for (int from = 0; from < eventIds.size(); from += STATS_BATCH_SIZE) {
+            try {
+                Map<Long, Long> fresh = findViews(eventIds.subList(from, Math.min(from + STATS_BATCH_SIZE, eventIds.size())));
+                fresh.forEach((eventId, value) -> entries.get(eventId).views = value);
+            } catch (RuntimeException e) {
+                log.warn("Views refresh failed: {}", e.getMessage());
+                return;
+            }
+        }
+        log.debug("Views refreshed for {} events", eventIds.size());
+    }
+
+    private Map<Long, Long> findViews(List<Long> eventIds) {
+
+        Map<Long, Long> result = new HashMap<>();
+        List<String> uris = new ArrayList<>();
+        for (Long eventId : eventIds) {
+            uris.add(EVENT_URI + eventId);
+            result.put(eventId, 0L);
+        }
+
+        ResponseEntity<Object> response = client.findStats(START_HISTORY, LocalDateTime.now(), String.join(",", uris), true);
+        List<StatsDto> stats = objectMapper.convertValue(response.getBody(), new TypeReference<>() {});
+
+        for (StatsDto stat : stats) {
+            Long eventId = Long.parseLong(stat.getUri().substring(EVENT_URI.length()));
+            result.merge(eventId, stat.getHits(), Math::max);
+        }
+        return result;
+    }
+
+    private static final class ViewsEntry {
+
+        volatile long views;
+        volatile long lastRead;
+
+        ViewsEntry(long views, long lastRead) {
+            this.views = views;
+            this.lastRead = lastRead;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching the given regular expressions, all of them without arguments, and
+ * writes the results as JSON to {@code -Dbenchmark.result} (jmh-result.json by default):
+ * <pre>
+ *   mvn -Pbenchmark -pl stats-service/benchmark -am package -DskipTests
+ *   java -jar stats-service/benchmark/target/benchmarks.jar [HitMapper|CreateHit|HitRepository]
+ * </pre>
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("benchmark.result", "jmh-result.json"));
+        for (String include : args) {
+            options.include(include);
+        }
+        if (args.length == 0) {
+            options.include(BenchmarkMain.class.getPackageName() + ".*Benchmark");
+        }
+        new Runner(options.build()).run();
+    }
+}
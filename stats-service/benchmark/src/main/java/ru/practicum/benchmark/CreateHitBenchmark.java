@@ -0,0 +1,49 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.practicum.dto.HitDto;
+import ru.practicum.service.HitService;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synchronous ingestion of single hits: dictionary lookup, insert and rollup upsert.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CreateHitBenchmark {
+
+    @Param({"100", "10000"})
+    int uris;
+
+    EmbeddedStatsServer server;
+    HitService hitService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new EmbeddedStatsServer();
+        server.createPartitions(LocalDateTime.now(), LocalDateTime.now().plusDays(1));
+        hitService = server.getBean(HitService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void createHit() {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        hitService.createHit(new HitDto(null, "ewm-main-service", "/events/" + random.nextInt(uris),
+                "10.0." + random.nextInt(256) + "." + random.nextInt(256), LocalDateTime.now().withNano(0)));
+    }
+}
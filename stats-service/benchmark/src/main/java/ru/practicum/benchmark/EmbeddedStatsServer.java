@@ -0,0 +1,64 @@
+package ru.practicum.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.practicum.StatsServerApp;
+import ru.practicum.repository.HitPartitionRepository;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * Stats server application context without the web layer, backed by a throwaway Postgres instance.
+ * The schema relies on Postgres-only features (partitioning, ON CONFLICT, INCLUDE indexes),
+ * so H2 cannot stand in for it.
+ */
+class EmbeddedStatsServer implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext context;
+
+    EmbeddedStatsServer() throws IOException {
+        this.postgres = EmbeddedPostgres.builder().start();
+        this.context = new SpringApplicationBuilder(StatsServerApp.class)
+                .web(WebApplicationType.NONE)
+                // command line arguments take precedence over application.properties, default properties do not
+                .run("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true",
+                        "--spring.datasource.username=postgres",
+                        "--spring.datasource.password=postgres",
+                        "--stats.ingest.mode=SYNC",
+                        "--logging.level.root=WARN",
+                        "--logging.level.ru.practicum=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+                        "--logging.level.org.springframework.transaction.interceptor=WARN",
+                        "--logging.level.org.springframework.orm.jpa.JpaTransactionManager=WARN");
+    }
+
+    /**
+     * Creates the monthly hits partitions covering the range, so that the loaded hits are spread over
+     * them as in production instead of all landing in hits_default. Must be called before loading hits.
+     */
+    void createPartitions(LocalDateTime from, LocalDateTime to) {
+
+        HitPartitionRepository hitPartitionRepository = getBean(HitPartitionRepository.class);
+        YearMonth last = YearMonth.from(to);
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(last); month = month.plusMonths(1)) {
+            hitPartitionRepository.createPartition(month);
+        }
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        context.close();
+        postgres.close();
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.practicum.HitMapper;
+import ru.practicum.dto.HitDto;
+import ru.practicum.model.Hit;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HitMapperBenchmark {
+
+    @Param({"192.168.10.25", "2001:db8:85a3::8a2e:370:7334"})
+    String ip;
+
+    HitDto hitDto;
+
+    @Setup
+    public void setUp() {
+        hitDto = new HitDto(null, "ewm-main-service", "/events/1", ip, LocalDateTime.now());
+    }
+
+    @Benchmark
+    public Hit returnHit() {
+        return HitMapper.returnHit(hitDto, 1, 1);
+    }
+}
@@ -0,0 +1,94 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.model.HitCount;
+import ru.practicum.repository.HitRepository;
+import ru.practicum.repository.HitStatsRepository;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the four raw aggregation queries, of {@link HitRepository} for all uris and of
+ * {@link HitStatsRepository#findRawStats} for a list of uris, over 30 days of hits
+ * spread across 1000 uris and 50000 ips.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HitRepositoryBenchmark {
+
+    private static final String APP = "ewm-main-service";
+    private static final int URIS = 1000;
+    private static final int IPS = 50000;
+    private static final int SECONDS = 30 * 24 * 60 * 60;
+
+    @Param({"10000", "100000", "1000000"})
+    int rows;
+
+    EmbeddedStatsServer server;
+    HitRepository hitRepository;
+    HitStatsRepository hitStatsRepository;
+    LocalDateTime start;
+    LocalDateTime end;
+    List<Integer> uriIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        server = new EmbeddedStatsServer();
+        hitRepository = server.getBean(HitRepository.class);
+        hitStatsRepository = server.getBean(HitStatsRepository.class);
+        JdbcTemplate jdbcTemplate = server.getBean(JdbcTemplate.class);
+
+        end = LocalDateTime.now().withNano(0);
+        start = end.minusSeconds(SECONDS);
+        server.createPartitions(start, end);
+
+        jdbcTemplate.update("INSERT INTO apps (name) VALUES (?) ON CONFLICT (name) DO NOTHING", APP);
+        jdbcTemplate.update("INSERT INTO uris (name) SELECT '/events/' || g FROM generate_series(1, ?) g " +
+                "ON CONFLICT (name) DO NOTHING", URIS);
+        jdbcTemplate.update("INSERT INTO hits (app_id, uri_id, ip, time_stamp) " +
+                "SELECT a.id, u.id, decode(lpad(to_hex(g % ?), 32, '0'), 'hex'), ? - (g % ?) * interval '1 second' " +
+                "FROM generate_series(1, ?) g " +
+                "JOIN apps a ON a.name = ? " +
+                "JOIN uris u ON u.name = '/events/' || (1 + g % ?)",
+                IPS, end, SECONDS, rows, APP, URIS);
+        jdbcTemplate.execute("ANALYZE hits");
+
+        uriIds = jdbcTemplate.queryForList("SELECT id FROM uris WHERE name IN " +
+                "('/events/1', '/events/2', '/events/3', '/events/4', '/events/5', " +
+                "'/events/6', '/events/7', '/events/8', '/events/9', '/events/10')", Integer.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Benchmark
+    public List<HitCount> findAllStats() {
+        return hitRepository.findAllStats(start, end);
+    }
+
+    @Benchmark
+    public List<HitCount> findAllStatsByUniqIp() {
+        return hitRepository.findAllStatsByUniqIp(start, end);
+    }
+
+    @Benchmark
+    public List<HitCount> findStatsByUris() {
+        return hitStatsRepository.findRawStats(start, end, uriIds, false);
+    }
+
+    @Benchmark
+    public List<HitCount> findStatsByUrisByUniqIp() {
+        return hitStatsRepository.findRawStats(start, end, uriIds, true);
+    }
+}
@@ -11,6 +11,7 @@ import ru.practicum.dto.HitDto;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -20,6 +21,10 @@ public class StatsClient extends BaseClient {
         return post("/hit", hitDto);
     }
 
+    public ResponseEntity<Object> addHits(List<HitDto> hitDtos) {
+        return post("/hits", hitDtos);
+    }
+
     @Autowired
     public StatsClient(@Value("${stats-server.url}") String serverUrl, RestTemplateBuilder builder) {
 
@@ -0,0 +1,88 @@
+package ru.practicum;
+
+import ru.practicum.exception.ValidationException;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Converts textual ip addresses to the fixed 16-byte form stored in hits. IPv4 addresses are
+ * stored as IPv4-mapped IPv6 addresses (::ffff:a.b.c.d), so every address has the same width.
+ */
+public final class IpAddresses {
+
+    public static final int LENGTH = 16;
+    private static final int MAPPED_PREFIX = 12;
+
+    private IpAddresses() {
+    }
+
+    public static byte[] parse(String ip) {
+
+        String value = ip.trim();
+        if (value.indexOf(':') < 0) {
+            return mapIpv4(parseIpv4(value, ip));
+        }
+
+        try {
+            // brackets make InetAddress treat the value strictly as an IPv6 literal, it never does a DNS lookup then
+            byte[] address = InetAddress.getByName("[" + value + "]").getAddress();
+            return address.length == LENGTH ? address : mapIpv4(address);
+        } catch (UnknownHostException e) {
+            throw new ValidationException(String.format("Invalid ip address %s", ip));
+        }
+    }
+
+    public static String format(byte[] address) {
+
+        if (isMappedIpv4(address)) {
+            return String.format("%d.%d.%d.%d", address[12] & 0xff, address[13] & 0xff, address[14] & 0xff, address[15] & 0xff);
+        }
+        try {
+            return InetAddress.getByAddress(address).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid ip address length " + address.length, e);
+        }
+    }
+
+    private static byte[] parseIpv4(String value, String ip) {
+
+        String[] parts = value.split("\\.", -1);
+        if (parts.length != 4) {
+            throw new ValidationException(String.format("Invalid ip address %s", ip));
+        }
+
+        byte[] address = new byte[4];
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (part.isEmpty() || part.length() > 3 || !part.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                throw new ValidationException(String.format("Invalid ip address %s", ip));
+            }
+            int octet = Integer.parseInt(part);
+            if (octet > 255) {
+                throw new ValidationException(String.format("Invalid ip address %s", ip));
+            }
+            address[i] = (byte) octet;
+        }
+        return address;
+    }
+
+    private static byte[] mapIpv4(byte[] ipv4) {
+
+        byte[] address = new byte[LENGTH];
+        address[10] = (byte) 0xff;
+        address[11] = (byte) 0xff;
+        System.arraycopy(ipv4, 0, address, MAPPED_PREFIX, 4);
+        return address;
+    }
+
+    private static boolean isMappedIpv4(byte[] address) {
+
+        for (int i = 0; i < 10; i++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return address[10] == (byte) 0xff && address[11] == (byte) 0xff;
+    }
+}
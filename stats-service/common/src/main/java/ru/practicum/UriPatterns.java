@@ -0,0 +1,41 @@
+package ru.practicum;
+
+/**
+ * Uri filters of the stats endpoints. A uri ending with {@code *}, such as {@code /events/*},
+ * stands for every uri starting with the rest of it and is looked up as a range of names.
+ */
+public final class UriPatterns {
+
+    public static final String WILDCARD = "*";
+
+    private UriPatterns() {
+    }
+
+    public static boolean isPrefix(String uri) {
+        return uri.endsWith(WILDCARD);
+    }
+
+    public static String prefix(String uri) {
+        return uri.substring(0, uri.length() - WILDCARD.length());
+    }
+
+    /**
+     * Smallest string greater than every string starting with the prefix, in UTF-8 byte order,
+     * or null when there is none.
+     */
+    public static String prefixEnd(String prefix) {
+
+        int[] codePoints = prefix.codePoints().toArray();
+        for (int i = codePoints.length - 1; i >= 0; i--) {
+            int next = codePoints[i] + 1;
+            if (next == Character.MIN_SURROGATE) {
+                next = Character.MAX_SURROGATE + 1;
+            }
+            if (next <= Character.MAX_CODE_POINT) {
+                codePoints[i] = next;
+                return new String(codePoints, 0, i + 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,154 @@
+package ru.practicum.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import ru.practicum.IpAddresses;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.sql.PartitionStatements;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Moves the rows of the baseline hits table, renamed to hits_v1 by V2, into the partitioned table:
+ * app and uri become dictionary ids and ips the 16-byte form of {@link IpAddresses}. Monthly
+ * partitions are created for the whole span of the old rows first, so none of them end up in
+ * hits_default. Rows with an ip that cannot be parsed are moved unchanged to hits_v1_invalid,
+ * which is left for an operator to fix or drop, so dropping hits_v1 loses no row.
+ */
+@Slf4j
+public class V3__EncodeHits extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+
+        Connection connection = context.getConnection();
+        if (!hasOldHits(connection)) {
+            return;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO apps (name) SELECT DISTINCT app FROM hits_v1 ON CONFLICT (name) DO NOTHING");
+            statement.execute("INSERT INTO uris (name) SELECT DISTINCT uri FROM hits_v1 ON CONFLICT (name) DO NOTHING");
+            createPartitions(statement);
+        }
+        Map<String, Integer> appIds = loadIds(connection, "apps");
+        Map<String, Integer> uriIds = loadIds(connection, "uris");
+
+        long copied = 0;
+        long invalid = 0;
+        try (Statement select = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO hits (app_id, uri_id, ip, time_stamp) " +
+                     "VALUES (?, ?, ?, ?)");
+             PreparedStatement quarantine = connection.prepareStatement("INSERT INTO hits_v1_invalid (id, app, uri, ip, time_stamp) " +
+                     "VALUES (?, ?, ?, ?, ?)")) {
+            select.execute("CREATE TABLE hits_v1_invalid (" +
+                    "id BIGINT NOT NULL, " +
+                    "app VARCHAR(200) NOT NULL, " +
+                    "uri VARCHAR(200) NOT NULL, " +
+                    "ip VARCHAR(25) NOT NULL, " +
+                    "time_stamp TIMESTAMP WITHOUT TIME ZONE NOT NULL, " +
+                    "CONSTRAINT pk_hits_v1_invalid PRIMARY KEY (id))");
+            select.setFetchSize(BATCH_SIZE);
+            try (ResultSet rs = select.executeQuery("SELECT id, app, uri, ip, time_stamp FROM hits_v1")) {
+                int batch = 0;
+                int invalidBatch = 0;
+                while (rs.next()) {
+                    byte[] ip;
+                    try {
+                        ip = IpAddresses.parse(rs.getString("ip"));
+                    } catch (ValidationException e) {
+                        quarantine.setLong(1, rs.getLong("id"));
+                        quarantine.setString(2, rs.getString("app"));
+                        quarantine.setString(3, rs.getString("uri"));
+                        quarantine.setString(4, rs.getString("ip"));
+                        quarantine.setTimestamp(5, rs.getTimestamp("time_stamp"));
+                        quarantine.addBatch();
+                        invalid++;
+                        if (++invalidBatch == BATCH_SIZE) {
+                            quarantine.executeBatch();
+                            invalidBatch = 0;
+                        }
+                        continue;
+                    }
+                    insert.setInt(1, appIds.get(rs.getString("app")));
+                    insert.setInt(2, uriIds.get(rs.getString("uri")));
+                    insert.setBytes(3, ip);
+                    insert.setTimestamp(4, rs.getTimestamp("time_stamp"));
+                    insert.addBatch();
+                    copied++;
+                    if (++batch == BATCH_SIZE) {
+                        insert.executeBatch();
+                        batch = 0;
+                    }
+                }
+                if (batch > 0) {
+                    insert.executeBatch();
+                }
+                if (invalidBatch > 0) {
+                    quarantine.executeBatch();
+                }
+            }
+
+            if (invalid == 0) {
+                select.execute("DROP TABLE hits_v1_invalid");
+            }
+            select.execute("DROP TABLE hits_v1");
+        }
+
+        log.info("Encoded {} hits of the baseline table", copied);
+        if (invalid > 0) {
+            log.warn("Moved {} hits with an invalid ip to hits_v1_invalid, fix and re-insert or drop them", invalid);
+        }
+    }
+
+    private boolean hasOldHits(Connection connection) throws SQLException {
+
+        try (PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM information_schema.tables " +
+                "WHERE table_schema = current_schema() AND table_name = 'hits_v1'");
+             ResultSet rs = statement.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    private void createPartitions(Statement statement) throws SQLException {
+
+        Timestamp min;
+        Timestamp max;
+        try (ResultSet rs = statement.executeQuery("SELECT MIN(time_stamp), MAX(time_stamp) FROM hits_v1")) {
+            rs.next();
+            min = rs.getTimestamp(1);
+            max = rs.getTimestamp(2);
+        }
+        if (min == null) {
+            return;
+        }
+
+        YearMonth last = YearMonth.from(max.toLocalDateTime());
+        for (YearMonth month = YearMonth.from(min.toLocalDateTime()); !month.isAfter(last); month = month.plusMonths(1)) {
+            statement.execute(PartitionStatements.createPartition(month));
+        }
+    }
+
+    private Map<String, Integer> loadIds(Connection connection, String table) throws SQLException {
+
+        Map<String, Integer> ids = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, name FROM " + table)) {
+            while (rs.next()) {
+                ids.put(rs.getString("name"), rs.getInt("id"));
+            }
+        }
+        return ids;
+    }
+}
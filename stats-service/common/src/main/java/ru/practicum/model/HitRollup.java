@@ -0,0 +1,27 @@
+package ru.practicum.model;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class HitRollup {
+
+    public static final Comparator<HitRollup> LOCK_ORDER = Comparator.comparing(HitRollup::getGranularity)
+            .thenComparing(HitRollup::getBucketStart)
+            .thenComparing(HitRollup::getAppId)
+            .thenComparing(HitRollup::getUriId);
+
+    RollupGranularity granularity;
+
+    LocalDateTime bucketStart;
+
+    Integer appId;
+
+    Integer uriId;
+}
@@ -0,0 +1,27 @@
+package ru.practicum.model;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * All-time counters of one app and uri together with the time span of its hits.
+ */
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class UriTotal {
+
+    Integer appId;
+
+    Integer uriId;
+
+    Long hits;
+
+    Long uniqueHits;
+
+    LocalDateTime firstHit;
+
+    LocalDateTime lastHit;
+}
@@ -0,0 +1,59 @@
+package ru.practicum.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter over 64-bit hashes, sized for {@code expectedInsertions} at the given false positive
+ * probability. Bit positions are derived from the two halves of one hash, see Kirsch and Mitzenmacher.
+ */
+public class BloomFilter {
+
+    private final long[] words;
+    private final long bits;
+    private final int hashes;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+
+        long size = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.words = new long[(int) Math.max(1, (size + 63) / 64)];
+        this.bits = words.length * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * @return true if the hash was already (probably) present
+     */
+    public boolean put(long hash) {
+
+        boolean present = true;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long index = ((h1 + i * h2) & Integer.MAX_VALUE) % bits;
+            long mask = 1L << index;
+            int word = (int) (index >>> 6);
+            if ((words[word] & mask) == 0) {
+                words[word] |= mask;
+                present = false;
+            }
+        }
+        return present;
+    }
+
+    public boolean mightContain(long hash) {
+
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long index = ((h1 + i * h2) & Integer.MAX_VALUE) % bits;
+            if ((words[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch over 64-bit hashes. Estimates never undercount; with {@code width} counters per
+ * row an estimate exceeds the true count by more than 2.72 * total / width with probability
+ * at most e^-depth.
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final long[] counters;
+
+    public CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        this.counters = new long[depth * width];
+    }
+
+    /**
+     * @return the estimate after the update
+     */
+    public long add(long hash, long count) {
+
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = index(hash, row);
+            counters[index] += count;
+            estimate = Math.min(estimate, counters[index]);
+        }
+        return estimate;
+    }
+
+    public long estimate(long hash) {
+
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    public void clear() {
+        Arrays.fill(counters, 0);
+    }
+
+    private int index(long hash, int row) {
+
+        // row hashes are derived from the two halves of one hash, see Kirsch and Mitzenmacher
+        int combined = (int) hash + row * (int) (hash >>> 32);
+        return row * width + ((combined & Integer.MAX_VALUE) % width);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.practicum.sketch;
+
+public final class Hashing {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    /**
+     * 64-bit FNV-1a followed by the MurmurHash3 finalizer, which spreads the bits well enough
+     * for HyperLogLog register selection.
+     */
+    public static long hash64(byte[] data) {
+
+        long hash = FNV_OFFSET;
+        for (byte b : data) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    public static long mix(long hash) {
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53ba94fL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
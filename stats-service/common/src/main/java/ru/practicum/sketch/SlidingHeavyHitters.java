@@ -0,0 +1,126 @@
+package ru.practicum.sketch;
+
+import java.util.*;
+
+/**
+ * Most frequent keys over a sliding time window. The window is split into slots, each with its own
+ * {@link CountMinSketch} and a bounded list of candidate keys; expired slots are cleared and reused.
+ * Memory does not depend on the number of distinct keys: slots * depth * width counters plus
+ * slots * capacity candidates.
+ */
+public class SlidingHeavyHitters<K> {
+
+    private final long slotMillis;
+    private final int capacity;
+    private final Slot<K>[] slots;
+
+    @SuppressWarnings("unchecked")
+    public SlidingHeavyHitters(long windowMillis, int slotCount, int depth, int width, int capacity) {
+        this.slotMillis = Math.max(1, windowMillis / slotCount);
+        this.capacity = capacity;
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot<>(depth, width);
+        }
+    }
+
+    public synchronized void add(K key, long hash, long now) {
+
+        long period = now / slotMillis;
+        Slot<K> slot = slots[(int) (period % slots.length)];
+        if (slot.period != period) {
+            slot.reset(period);
+        }
+
+        long estimate = slot.sketch.add(hash, 1);
+        Candidate candidate = slot.candidates.get(key);
+        if (candidate != null) {
+            candidate.count = estimate;
+        } else if (slot.candidates.size() < capacity) {
+            slot.candidates.put(key, new Candidate(hash, estimate));
+            slot.minCount = Math.min(slot.minCount, estimate);
+        } else if (estimate > slot.minCount) {
+            // counts only grow, so the cached minimum is a lower bound and the scan is needed only here
+            K minKey = null;
+            long minCount = Long.MAX_VALUE;
+            for (Map.Entry<K, Candidate> entry : slot.candidates.entrySet()) {
+                if (entry.getValue().count < minCount) {
+                    minKey = entry.getKey();
+                    minCount = entry.getValue().count;
+                }
+            }
+            if (estimate > minCount) {
+                slot.candidates.remove(minKey);
+                slot.candidates.put(key, new Candidate(hash, estimate));
+            }
+            slot.minCount = minCount;
+        }
+    }
+
+    /**
+     * @return up to {@code limit} keys with the highest estimated counts in the window, by count descending
+     */
+    public synchronized List<Map.Entry<K, Long>> top(int limit, long now) {
+
+        long period = now / slotMillis;
+        List<Slot<K>> live = new ArrayList<>(slots.length);
+        for (Slot<K> slot : slots) {
+            if (slot.period > period - slots.length && slot.period <= period) {
+                live.add(slot);
+            }
+        }
+
+        Map<K, Long> hashes = new HashMap<>();
+        for (Slot<K> slot : live) {
+            for (Map.Entry<K, Candidate> entry : slot.candidates.entrySet()) {
+                hashes.put(entry.getKey(), entry.getValue().hash);
+            }
+        }
+
+        PriorityQueue<Map.Entry<K, Long>> top = new PriorityQueue<>(limit + 1, Map.Entry.comparingByValue());
+        for (Map.Entry<K, Long> entry : hashes.entrySet()) {
+            long count = 0;
+            for (Slot<K> slot : live) {
+                count += slot.sketch.estimate(entry.getValue());
+            }
+            top.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), count));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Map.Entry<K, Long>> result = new ArrayList<>(top);
+        result.sort(Map.Entry.<K, Long>comparingByValue().reversed());
+        return result;
+    }
+
+    private static final class Slot<K> {
+
+        final CountMinSketch sketch;
+        final Map<K, Candidate> candidates = new HashMap<>();
+        long period = Long.MIN_VALUE;
+        long minCount;
+
+        Slot(int depth, int width) {
+            this.sketch = new CountMinSketch(depth, width);
+        }
+
+        void reset(long period) {
+            this.period = period;
+            sketch.clear();
+            candidates.clear();
+            minCount = Long.MAX_VALUE;
+        }
+    }
+
+    private static final class Candidate {
+
+        final long hash;
+        long count;
+
+        Candidate(long hash, long count) {
+            this.hash = hash;
+            this.count = count;
+        }
+    }
+}
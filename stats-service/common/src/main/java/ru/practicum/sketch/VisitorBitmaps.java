@@ -0,0 +1,36 @@
+package ru.practicum.sketch;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Stored form of the visitor id bitmaps in hit_bitmaps: the portable RoaringBitmap serialization,
+ * run-length optimized before it is written.
+ */
+public final class VisitorBitmaps {
+
+    private VisitorBitmaps() {
+    }
+
+    public static byte[] toBytes(RoaringBitmap bitmap) {
+
+        bitmap.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+
+    public static RoaringBitmap fromBytes(byte[] bytes) {
+
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try {
+            bitmap.deserialize(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bitmap;
+    }
+}
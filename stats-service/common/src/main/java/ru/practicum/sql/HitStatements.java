@@ -0,0 +1,200 @@
+package ru.practicum.sql;
+
+import ru.practicum.model.HitRollup;
+import ru.practicum.model.UriTotal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statements of the write path shared by the servlet-based and the reactive server. Multi-row
+ * statements number their named parameters per row, {@code :bucket0, :app0, ...}, which both
+ * NamedParameterJdbcTemplate and DatabaseClient bind; the matching {@code ...Params} methods build
+ * them. Rows must be passed in key order, so that concurrent writers lock them in the same order,
+ * and at most {@link #MAX_ROWS} at a time, which keeps every statement below the bind parameter limit.
+ * <p>
+ * Day sketches, month sketches and day bitmaps are all "bucket" tables: one serialized value per
+ * bucket start, app and uri, merged in memory while the rows are locked.
+ */
+public final class HitStatements {
+
+    public static final int MAX_ROWS = 1000;
+
+    public static final String DAY_SKETCHES = "hit_sketches";
+    public static final String MONTH_SKETCHES = "hit_month_sketches";
+    public static final String SKETCH_COLUMN = "registers";
+    public static final String BITMAPS = "hit_bitmaps";
+    public static final String BITMAP_COLUMN = "visitors";
+
+    public static final String FIND_VISITOR_IDS = "SELECT id, ip FROM visitor_ids WHERE ip IN (:ips)";
+
+    private HitStatements() {
+    }
+
+    public static String incrementRollups(int rows) {
+
+        return "INSERT INTO hit_rollups (granularity, bucket_start, app_id, uri_id, hits) VALUES " +
+                rows(rows, "(:granularity%1$d, :bucket%1$d, :app%1$d, :uri%1$d, :hits%1$d)") +
+                " ON CONFLICT (granularity, bucket_start, app_id, uri_id) DO UPDATE SET hits = hit_rollups.hits + EXCLUDED.hits";
+    }
+
+    public static Map<String, Object> incrementRollupsParams(List<Map.Entry<HitRollup, Long>> counts) {
+
+        Map<String, Object> params = new HashMap<>();
+        for (int i = 0; i < counts.size(); i++) {
+            HitRollup rollup = counts.get(i).getKey();
+            params.put("granularity" + i, rollup.getGranularity().name());
+            putKey(params, i, rollup);
+            params.put("hits" + i, counts.get(i).getValue());
+        }
+        return params;
+    }
+
+    /**
+     * Creates the missing bucket rows with the value {@code :empty}, so that all of them can be locked.
+     */
+    public static String insertEmptyBuckets(String table, String column, int rows) {
+
+        return "INSERT INTO " + table + " (bucket_start, app_id, uri_id, " + column + ") VALUES " +
+                rows(rows, "(:bucket%1$d, :app%1$d, :uri%1$d, :empty)") +
+                " ON CONFLICT (bucket_start, app_id, uri_id) DO NOTHING";
+    }
+
+    /**
+     * Reads and locks the bucket rows in one round trip; the rows are locked in key order.
+     */
+    public static String lockBuckets(String table, String column, int rows) {
+
+        return "SELECT bucket_start, app_id, uri_id, " + column + " FROM " + table +
+                " WHERE (bucket_start, app_id, uri_id) IN (" + rows(rows, "(:bucket%1$d, :app%1$d, :uri%1$d)") + ")" +
+                " ORDER BY bucket_start, app_id, uri_id FOR UPDATE";
+    }
+
+    public static String updateBuckets(String table, String column, int rows) {
+
+        return "UPDATE " + table + " AS t SET " + column + " = v.value FROM (VALUES " +
+                rows(rows, "(CAST(:bucket%1$d AS timestamp), CAST(:app%1$d AS integer), CAST(:uri%1$d AS integer), " +
+                        "CAST(:value%1$d AS bytea))") +
+                ") AS v (bucket_start, app_id, uri_id, value) " +
+                "WHERE t.bucket_start = v.bucket_start AND t.app_id = v.app_id AND t.uri_id = v.uri_id";
+    }
+
+    public static Map<String, Object> bucketParams(List<HitRollup> keys) {
+
+        Map<String, Object> params = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            putKey(params, i, keys.get(i));
+        }
+        return params;
+    }
+
+    public static Map<String, Object> bucketValueParams(List<Map.Entry<HitRollup, byte[]>> values) {
+
+        Map<String, Object> params = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            putKey(params, i, values.get(i).getKey());
+            params.put("value" + i, values.get(i).getValue());
+        }
+        return params;
+    }
+
+    /**
+     * Takes the ips as {@code :ip0, :ip1, ...}.
+     */
+    public static String insertVisitorIds(int rows) {
+
+        return "INSERT INTO visitor_ids (ip) VALUES " + rows(rows, "(:ip%1$d)") + " ON CONFLICT (ip) DO NOTHING";
+    }
+
+    public static Map<String, Object> ipParams(List<byte[]> ips) {
+
+        Map<String, Object> params = new HashMap<>();
+        for (int i = 0; i < ips.size(); i++) {
+            params.put("ip" + i, ips.get(i));
+        }
+        return params;
+    }
+
+    /**
+     * Returns app and uri of every visitor that was new to its uri.
+     */
+    public static String addUriVisitors(int rows) {
+
+        return "INSERT INTO uri_visitors (app_id, uri_id, visitor_id) VALUES " +
+                rows(rows, "(:app%1$d, :uri%1$d, :visitor%1$d)") +
+                " ON CONFLICT (app_id, uri_id, visitor_id) DO NOTHING RETURNING app_id, uri_id";
+    }
+
+    /**
+     * @param visitors rows of app id, uri id and visitor id
+     */
+    public static Map<String, Object> uriVisitorParams(List<List<Integer>> visitors) {
+
+        Map<String, Object> params = new HashMap<>();
+        for (int i = 0; i < visitors.size(); i++) {
+            params.put("app" + i, visitors.get(i).get(0));
+            params.put("uri" + i, visitors.get(i).get(1));
+            params.put("visitor" + i, visitors.get(i).get(2));
+        }
+        return params;
+    }
+
+    public static String incrementUriTotals(int rows) {
+
+        return "INSERT INTO uri_totals (app_id, uri_id, hits, unique_hits, first_hit, last_hit) VALUES " +
+                rows(rows, "(:app%1$d, :uri%1$d, :hits%1$d, :unique%1$d, :first%1$d, :last%1$d)") +
+                " ON CONFLICT (app_id, uri_id) DO UPDATE SET " +
+                "hits = uri_totals.hits + EXCLUDED.hits, " +
+                "unique_hits = uri_totals.unique_hits + EXCLUDED.unique_hits, " +
+                "first_hit = LEAST(uri_totals.first_hit, EXCLUDED.first_hit), " +
+                "last_hit = GREATEST(uri_totals.last_hit, EXCLUDED.last_hit)";
+    }
+
+    /**
+     * @param totals increments, their unique hits are the number of new visitors
+     */
+    public static Map<String, Object> uriTotalParams(List<UriTotal> totals) {
+
+        Map<String, Object> params = new HashMap<>();
+        for (int i = 0; i < totals.size(); i++) {
+            UriTotal total = totals.get(i);
+            params.put("app" + i, total.getAppId());
+            params.put("uri" + i, total.getUriId());
+            params.put("hits" + i, total.getHits());
+            params.put("unique" + i, total.getUniqueHits());
+            params.put("first" + i, total.getFirstHit());
+            params.put("last" + i, total.getLastHit());
+        }
+        return params;
+    }
+
+    /**
+     * Splits rows into chunks of at most {@link #MAX_ROWS}, keeping their order.
+     */
+    public static <T> List<List<T>> chunks(List<T> rows) {
+
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += MAX_ROWS) {
+            chunks.add(rows.subList(from, Math.min(rows.size(), from + MAX_ROWS)));
+        }
+        return chunks;
+    }
+
+    private static void putKey(Map<String, Object> params, int row, HitRollup key) {
+
+        params.put("bucket" + row, key.getBucketStart());
+        params.put("app" + row, key.getAppId());
+        params.put("uri" + row, key.getUriId());
+    }
+
+    private static String rows(int rows, String format) {
+
+        List<String> values = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            values.add(String.format(format, i));
+        }
+        return String.join(", ", values);
+    }
+}
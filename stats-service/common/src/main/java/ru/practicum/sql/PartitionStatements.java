@@ -0,0 +1,171 @@
+package ru.practicum.sql;
+
+import ru.practicum.model.RollupGranularity;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Statements for the monthly range partitions of the hits table, run by the migrations and by the
+ * partition maintenance of both servers. Partition names are derived from the month only, so the
+ * identifiers below never contain user input.
+ */
+public final class PartitionStatements {
+
+    public static final String FIND_PARTITIONS = "SELECT c.relname FROM pg_inherits AS i " +
+            "JOIN pg_class AS c ON c.oid = i.inhrelid " +
+            "JOIN pg_class AS p ON p.oid = i.inhparent " +
+            "WHERE p.relname = 'hits'";
+    public static final String FIND_DEFAULT_MONTHS = "SELECT DISTINCT date_trunc('month', time_stamp) AS month FROM hits_default";
+    /**
+     * Conflicts with itself, so the servlet and the reactive server never create a partition concurrently,
+     * and with inserts, so no row of the month can slip into hits_default before the partition is attached.
+     */
+    public static final String LOCK_DEFAULT = "LOCK TABLE hits_default IN SHARE ROW EXCLUSIVE MODE";
+    /**
+     * Waits for the batches that have already counted visitors in uri_visitors and blocks new ones until
+     * the transaction ends, so a visitor of a detached partition is not removed while a batch counts
+     * a new hit of it. Inserts into hits are not blocked. Conflicts with itself, so a detached
+     * partition is never subtracted twice.
+     */
+    public static final String LOCK_TOTALS = "LOCK TABLE uri_visitors IN SHARE ROW EXCLUSIVE MODE";
+    public static final String HAS_DEFAULT_PARTITION = "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table " +
+            "WHERE partrelid = 'hits'::regclass AND partdefid <> 0)";
+    /**
+     * Standalone monthly tables that retention has detached but not yet subtracted.
+     */
+    public static final String FIND_DETACHED = "SELECT relname FROM pg_class " +
+            "WHERE relkind = 'r' AND NOT relispartition AND relname ~ '^hits_p[0-9]{4}_[0-9]{2}$' " +
+            "AND obj_description(oid, 'pg_class') IS DISTINCT FROM 'retained out'";
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("hits_p(\\d{4})_(\\d{2})");
+
+    private PartitionStatements() {
+    }
+
+    /**
+     * Only valid while hits_default holds no rows of the month, e.g. inside a migration.
+     */
+    public static String createPartition(YearMonth month) {
+
+        return String.format("CREATE TABLE IF NOT EXISTS %s PARTITION OF hits FOR VALUES FROM ('%s') TO ('%s')",
+                partitionName(month), month.atDay(1), month.plusMonths(1).atDay(1));
+    }
+
+    public static String partitionExists(YearMonth month) {
+        return String.format("SELECT to_regclass('%s') IS NOT NULL", partitionName(month));
+    }
+
+    /**
+     * Creates the partition detached, moves the month's rows out of hits_default into it and then
+     * attaches it. Attaching directly would fail as soon as hits_default holds a row of the month.
+     * The statements must run in one transaction after {@link #LOCK_DEFAULT}.
+     */
+    public static List<String> createPartitionFromDefault(YearMonth month) {
+
+        String name = partitionName(month);
+        String from = month.atDay(1).toString();
+        String to = month.plusMonths(1).atDay(1).toString();
+        String range = String.format("time_stamp >= '%s' AND time_stamp < '%s'", from, to);
+        return List.of(
+                String.format("CREATE TABLE %s (LIKE hits INCLUDING DEFAULTS INCLUDING CONSTRAINTS)", name),
+                String.format("INSERT INTO %s SELECT * FROM hits_default WHERE %s", name, range),
+                String.format("DELETE FROM hits_default WHERE %s", range),
+                String.format("ALTER TABLE hits ATTACH PARTITION %s FOR VALUES FROM ('%s') TO ('%s')", name, from, to));
+    }
+
+    public static String isPartition(YearMonth month) {
+        return String.format("SELECT COALESCE((SELECT relispartition FROM pg_class WHERE oid = to_regclass('%s')), false)",
+                partitionName(month));
+    }
+
+    /**
+     * Takes the hits of a detached partition out of the all-time totals: the hits are subtracted, visitors
+     * that have no hit left in hits are removed from uri_visitors and subtracted from the unique hits, uris
+     * without hits are deleted and the first hit of the others is looked up again. The statements must
+     * run in one transaction after {@link #LOCK_TOTALS}, together with {@link #removeDerived} and the drop
+     * or {@link #markRetainedOut}.
+     */
+    public static List<String> subtractFromTotals(YearMonth month) {
+
+        String name = partitionName(month);
+        return List.of(
+                String.format("UPDATE uri_totals AS t SET hits = t.hits - d.hits " +
+                        "FROM (SELECT app_id, uri_id, COUNT(*) AS hits FROM %s GROUP BY app_id, uri_id) AS d " +
+                        "WHERE t.app_id = d.app_id AND t.uri_id = d.uri_id", name),
+                String.format("WITH removed AS (DELETE FROM uri_visitors AS uv " +
+                        "USING (SELECT DISTINCT p.app_id, p.uri_id, p.ip, v.id AS visitor_id FROM %s AS p " +
+                        "JOIN visitor_ids AS v ON v.ip = p.ip) AS d " +
+                        "WHERE uv.app_id = d.app_id AND uv.uri_id = d.uri_id AND uv.visitor_id = d.visitor_id " +
+                        "AND NOT EXISTS (SELECT 1 FROM hits AS h " +
+                        "WHERE h.uri_id = d.uri_id AND h.app_id = d.app_id AND h.ip = d.ip) " +
+                        "RETURNING uv.app_id, uv.uri_id) " +
+                        "UPDATE uri_totals AS t SET unique_hits = t.unique_hits - r.visitors " +
+                        "FROM (SELECT app_id, uri_id, COUNT(*) AS visitors FROM removed GROUP BY app_id, uri_id) AS r " +
+                        "WHERE t.app_id = r.app_id AND t.uri_id = r.uri_id", name),
+                "DELETE FROM uri_totals WHERE hits <= 0",
+                String.format("UPDATE uri_totals AS t SET first_hit = COALESCE((SELECT MIN(h.time_stamp) FROM hits AS h " +
+                        "WHERE h.uri_id = t.uri_id AND h.app_id = t.app_id), t.first_hit) " +
+                        "WHERE t.first_hit < '%s'", month.plusMonths(1).atDay(1)));
+    }
+
+    /**
+     * Deletes the rollups, sketches and bitmaps of the partition's month, so that every source of
+     * precomputed counts covers the same retained hits. All of their buckets lie within one month.
+     * The statements must run in the transaction of {@link #subtractFromTotals}.
+     */
+    public static List<String> removeDerived(YearMonth month) {
+
+        String range = String.format("bucket_start >= '%s' AND bucket_start < '%s'", month.atDay(1), month.plusMonths(1).atDay(1));
+        List<String> granularities = new ArrayList<>();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            granularities.add("'" + granularity.name() + "'");
+        }
+        return List.of(
+                String.format("DELETE FROM hit_rollups WHERE granularity IN (%s) AND %s", String.join(", ", granularities), range),
+                String.format("DELETE FROM %s WHERE %s", HitStatements.DAY_SKETCHES, range),
+                String.format("DELETE FROM %s WHERE %s", HitStatements.MONTH_SKETCHES, range),
+                String.format("DELETE FROM %s WHERE %s", HitStatements.BITMAPS, range));
+    }
+
+    /**
+     * Only changes the catalog. Postgres does not detach concurrently while hits has a default partition,
+     * the plain form then holds its lock on hits just as long as the catalog update takes.
+     */
+    public static String detachPartition(YearMonth month, boolean concurrently) {
+        return String.format("ALTER TABLE hits DETACH PARTITION %s%s", partitionName(month), concurrently ? " CONCURRENTLY" : "");
+    }
+
+    /**
+     * Keeps a detached table that has been subtracted out of {@link #FIND_DETACHED}.
+     */
+    public static String markRetainedOut(YearMonth month) {
+        return String.format("COMMENT ON TABLE %s IS 'retained out'", partitionName(month));
+    }
+
+    public static String dropPartition(YearMonth month) {
+        return String.format("DROP TABLE IF EXISTS %s", partitionName(month));
+    }
+
+    /**
+     * @return months of the names that are monthly partitions, other names are skipped
+     */
+    public static List<YearMonth> toMonths(List<String> partitionNames) {
+
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : partitionNames) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches()) {
+                months.add(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+            }
+        }
+        return months;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("hits_p%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+}
@@ -5,4 +5,4 @@ CREATE TABLE IF NOT EXISTS hits (
 	ip 			VARCHAR(25) NOT NULL,
 	time_stamp	TIMESTAMP WITHOUT TIME ZONE NOT NULL,
 	CONSTRAINT pk_hit PRIMARY KEY (id)
-);
\ No newline at end of file
+);
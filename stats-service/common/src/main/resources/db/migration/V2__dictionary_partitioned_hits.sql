@@ -0,0 +1,43 @@
+CREATE TABLE IF NOT EXISTS apps (
+	id 			INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+	name 		VARCHAR(200) NOT NULL,
+	CONSTRAINT pk_apps PRIMARY KEY (id),
+	CONSTRAINT uq_apps_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS uris (
+	id 			INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+	name 		VARCHAR(200) NOT NULL,
+	CONSTRAINT pk_uris PRIMARY KEY (id),
+	CONSTRAINT uq_uris_name UNIQUE (name)
+);
+
+CREATE INDEX IF NOT EXISTS ix_uris_name_pattern ON uris (name text_pattern_ops);
+
+-- The baseline hits table stored app, uri and ip as text and was not partitioned. It is moved
+-- aside here and its rows are encoded into the new table by V3.
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM information_schema.columns
+			WHERE table_schema = current_schema() AND table_name = 'hits' AND column_name = 'app') THEN
+		ALTER TABLE hits RENAME TO hits_v1;
+		ALTER TABLE hits_v1 RENAME CONSTRAINT pk_hit TO pk_hit_v1;
+	END IF;
+END $$;
+
+CREATE SEQUENCE IF NOT EXISTS hits_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS hits (
+	id 			BIGINT DEFAULT nextval('hits_seq') NOT NULL,
+	app_id 		INTEGER NOT NULL,
+	uri_id 		INTEGER NOT NULL,
+	ip 			BYTEA NOT NULL,
+	time_stamp	TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	CONSTRAINT pk_hit PRIMARY KEY (id, time_stamp)
+) PARTITION BY RANGE (time_stamp);
+
+CREATE TABLE IF NOT EXISTS hits_default PARTITION OF hits DEFAULT;
+
+CREATE INDEX IF NOT EXISTS ix_hits_time_stamp ON hits (time_stamp) INCLUDE (app_id, uri_id, ip);
+CREATE INDEX IF NOT EXISTS ix_hits_uri_time_stamp ON hits (uri_id, time_stamp) INCLUDE (app_id, ip);
+
@@ -0,0 +1,98 @@
+CREATE TABLE IF NOT EXISTS hit_sketches (
+	bucket_start	TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	app_id 			INTEGER NOT NULL,
+	uri_id 			INTEGER NOT NULL,
+	registers 		BYTEA NOT NULL,
+	CONSTRAINT pk_hit_sketches PRIMARY KEY (bucket_start, app_id, uri_id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_hit_sketches_uri_bucket_start ON hit_sketches (uri_id, bucket_start);
+
+CREATE TABLE IF NOT EXISTS hit_month_sketches (
+	bucket_start	TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	app_id 			INTEGER NOT NULL,
+	uri_id 			INTEGER NOT NULL,
+	registers 		BYTEA NOT NULL,
+	CONSTRAINT pk_hit_month_sketches PRIMARY KEY (bucket_start, app_id, uri_id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_hit_month_sketches_uri_bucket_start ON hit_month_sketches (uri_id, bucket_start);
+
+-- Sketches cannot be built in SQL, HitSketchService builds both tables from hits at startup while
+-- they are empty. Tables created before the migrations hold sketches of the ip string, which hashes
+-- differently from the binary ip, so they are emptied and rebuilt the same way.
+TRUNCATE hit_sketches, hit_month_sketches;
+
+CREATE TABLE IF NOT EXISTS visitor_ids (
+	id 			INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+	ip 			BYTEA NOT NULL,
+	CONSTRAINT pk_visitor_ids PRIMARY KEY (id),
+	CONSTRAINT uq_visitor_ids_ip UNIQUE (ip)
+);
+
+INSERT INTO visitor_ids (ip)
+SELECT DISTINCT ip FROM hits
+WHERE NOT EXISTS (SELECT 1 FROM visitor_ids);
+
+CREATE TABLE IF NOT EXISTS hit_bitmaps (
+	bucket_start	TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	app_id 			INTEGER NOT NULL,
+	uri_id 			INTEGER NOT NULL,
+	visitors 		BYTEA NOT NULL,
+	CONSTRAINT pk_hit_bitmaps PRIMARY KEY (bucket_start, app_id, uri_id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_hit_bitmaps_uri_bucket_start ON hit_bitmaps (uri_id, bucket_start);
+
+CREATE TABLE IF NOT EXISTS hit_rollups (
+	granularity		VARCHAR(10) NOT NULL,
+	bucket_start	TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	app_id 			INTEGER NOT NULL,
+	uri_id 			INTEGER NOT NULL,
+	hits 			BIGINT NOT NULL,
+	CONSTRAINT pk_hit_rollups PRIMARY KEY (granularity, bucket_start, app_id, uri_id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_hit_rollups_uri_bucket_start ON hit_rollups (granularity, uri_id, bucket_start) INCLUDE (app_id, hits);
+
+INSERT INTO hit_rollups (granularity, bucket_start, app_id, uri_id, hits)
+SELECT 'MINUTE', date_trunc('minute', time_stamp), app_id, uri_id, COUNT(*) FROM hits
+WHERE NOT EXISTS (SELECT 1 FROM hit_rollups WHERE granularity = 'MINUTE')
+GROUP BY date_trunc('minute', time_stamp), app_id, uri_id;
+
+INSERT INTO hit_rollups (granularity, bucket_start, app_id, uri_id, hits)
+SELECT 'HOUR', date_trunc('hour', time_stamp), app_id, uri_id, COUNT(*) FROM hits
+WHERE NOT EXISTS (SELECT 1 FROM hit_rollups WHERE granularity = 'HOUR')
+GROUP BY date_trunc('hour', time_stamp), app_id, uri_id;
+
+INSERT INTO hit_rollups (granularity, bucket_start, app_id, uri_id, hits)
+SELECT 'DAY', date_trunc('day', time_stamp), app_id, uri_id, COUNT(*) FROM hits
+WHERE NOT EXISTS (SELECT 1 FROM hit_rollups WHERE granularity = 'DAY')
+GROUP BY date_trunc('day', time_stamp), app_id, uri_id;
+
+CREATE TABLE IF NOT EXISTS uri_totals (
+	app_id 			INTEGER NOT NULL,
+	uri_id 			INTEGER NOT NULL,
+	hits 			BIGINT NOT NULL,
+	unique_hits 	BIGINT NOT NULL,
+	first_hit 		TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	last_hit 		TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	CONSTRAINT pk_uri_totals PRIMARY KEY (app_id, uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS uri_visitors (
+	app_id 			INTEGER NOT NULL,
+	uri_id 			INTEGER NOT NULL,
+	visitor_id 		INTEGER NOT NULL,
+	CONSTRAINT pk_uri_visitors PRIMARY KEY (app_id, uri_id, visitor_id)
+);
+
+INSERT INTO uri_visitors (app_id, uri_id, visitor_id)
+SELECT DISTINCT h.app_id, h.uri_id, v.id FROM hits h JOIN visitor_ids v ON v.ip = h.ip
+WHERE NOT EXISTS (SELECT 1 FROM uri_totals)
+ON CONFLICT (app_id, uri_id, visitor_id) DO NOTHING;
+
+INSERT INTO uri_totals (app_id, uri_id, hits, unique_hits, first_hit, last_hit)
+SELECT app_id, uri_id, COUNT(*), COUNT(DISTINCT ip), MIN(time_stamp), MAX(time_stamp) FROM hits
+WHERE NOT EXISTS (SELECT 1 FROM uri_totals)
+GROUP BY app_id, uri_id;
@@ -0,0 +1,52 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.exception.ValidationException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IpAddressesTest {
+
+    @Test
+    void parseIpv4AsMappedIpv6() {
+
+        byte[] address = IpAddresses.parse("192.168.0.1");
+
+        assertArrayEquals(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff, (byte) 192, (byte) 168, 0, 1}, address);
+        assertEquals("192.168.0.1", IpAddresses.format(address));
+    }
+
+    @Test
+    void parseIpv6() {
+
+        byte[] address = IpAddresses.parse("2001:db8::1");
+
+        assertEquals(IpAddresses.LENGTH, address.length);
+        assertEquals(0x20, address[0]);
+        assertEquals(0x01, address[1]);
+        assertEquals(0x0d, address[2]);
+        assertEquals((byte) 0xb8, address[3]);
+        assertEquals(1, address[15]);
+    }
+
+    @Test
+    void equalAddressesHaveOneCanonicalForm() {
+
+        assertArrayEquals(IpAddresses.parse("2001:db8::1"), IpAddresses.parse("2001:0DB8:0000:0000:0000:0000:0000:0001"));
+        assertArrayEquals(IpAddresses.parse("10.0.0.1"), IpAddresses.parse("::ffff:10.0.0.1"));
+        assertArrayEquals(IpAddresses.parse("10.0.0.1"), IpAddresses.parse(" 10.0.0.1 "));
+        assertEquals("2001:db8:0:0:0:0:0:1", IpAddresses.format(IpAddresses.parse("2001:0DB8::0001")));
+        assertEquals("10.0.0.1", IpAddresses.format(IpAddresses.parse("::ffff:10.0.0.1")));
+    }
+
+    @Test
+    void parseRejectsInvalidAddresses() {
+
+        for (String ip : new String[]{"", "1.2.3", "1.2.3.4.5", "1.2.3.256", "1..2.3", "1.2.3.-4", "1.2.3.0004",
+                "\u0661.\u0662.\u0663.\u0664", "localhost", "example.com", "1:2:3", "::g", "[::1]"}) {
+            assertThrows(ValidationException.class, () -> IpAddresses.parse(ip), ip);
+        }
+    }
+}
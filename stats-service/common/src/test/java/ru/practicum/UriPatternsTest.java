@@ -0,0 +1,76 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UriPatternsTest {
+
+    private static final String MAX = new String(Character.toChars(Character.MAX_CODE_POINT));
+
+    @Test
+    void wildcardMarksPrefix() {
+
+        assertTrue(UriPatterns.isPrefix("/events/*"));
+        assertFalse(UriPatterns.isPrefix("/events/1"));
+        assertEquals("/events/", UriPatterns.prefix("/events/*"));
+        assertEquals("", UriPatterns.prefix("*"));
+    }
+
+    @Test
+    void prefixEndIncrementsLastCharacter() {
+
+        assertEquals("/events0", UriPatterns.prefixEnd("/events/"));
+        assertEquals("/b", UriPatterns.prefixEnd("/a"));
+    }
+
+    @Test
+    void prefixEndSkipsSurrogateRange() {
+
+        assertEquals("/a\uE000", UriPatterns.prefixEnd("/a\uD7FF"));
+    }
+
+    @Test
+    void prefixEndIncrementsSupplementaryCharacter() {
+
+        assertEquals("/\uD83D\uDE01", UriPatterns.prefixEnd("/\uD83D\uDE00"));
+        assertEquals("/\uD800\uDC00", UriPatterns.prefixEnd("/\uFFFF"));
+    }
+
+    @Test
+    void prefixEndCarriesOverMaxCodePoint() {
+
+        assertEquals("/b", UriPatterns.prefixEnd("/a" + MAX));
+        assertEquals("0", UriPatterns.prefixEnd("/" + MAX + MAX));
+    }
+
+    @Test
+    void prefixEndIsNullWithoutUpperBound() {
+
+        assertNull(UriPatterns.prefixEnd(""));
+        assertNull(UriPatterns.prefixEnd(MAX + MAX));
+    }
+
+    @Test
+    void everyUriWithPrefixSortsBelowPrefixEnd() {
+
+        for (String prefix : new String[]{"/events/", "/a\uD7FF", "/\uFFFF", "/a" + MAX, "/\uD83D\uDE00"}) {
+            byte[] end = utf8(UriPatterns.prefixEnd(prefix));
+            for (String suffix : new String[]{"", "1", "~", "\u00FF", "\uD7FF", "\uE000", "\uFFFF", "\uD83D\uDE00", MAX + MAX}) {
+                byte[] uri = utf8(prefix + suffix);
+                assertTrue(Arrays.compareUnsigned(utf8(prefix), uri) <= 0);
+                assertTrue(Arrays.compareUnsigned(uri, end) < 0, prefix + suffix);
+            }
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
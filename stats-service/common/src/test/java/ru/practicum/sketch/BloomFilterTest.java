@@ -0,0 +1,64 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.IpAddresses;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    @Test
+    void putReportsKeysAlreadyPresent() {
+
+        BloomFilter filter = new BloomFilter(1_000, 0.001);
+        long hash = Hashing.hash64(IpAddresses.parse("10.0.0.1"));
+
+        assertFalse(filter.mightContain(hash));
+        assertFalse(filter.put(hash));
+        assertTrue(filter.put(hash));
+        assertTrue(filter.mightContain(hash));
+    }
+
+    @Test
+    void insertedKeysAreNeverMissed() {
+
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(Hashing.mix(i));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(Hashing.mix(i)));
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearConfiguredProbability() {
+
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(Hashing.mix(i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(Hashing.mix(10_000 + i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives");
+    }
+
+    @Test
+    void clearForgetsKeys() {
+
+        BloomFilter filter = new BloomFilter(1_000, 0.001);
+        long hash = Hashing.hash64(IpAddresses.parse("10.0.0.1"));
+        filter.put(hash);
+
+        filter.clear();
+
+        assertFalse(filter.mightContain(hash));
+    }
+}
@@ -0,0 +1,64 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimateIsExactWithoutCollisions() {
+
+        CountMinSketch sketch = new CountMinSketch(4, 2048);
+
+        assertEquals(3, sketch.add(Hashing.mix(1), 3));
+        assertEquals(5, sketch.add(Hashing.mix(1), 2));
+        sketch.add(Hashing.mix(2), 1);
+
+        assertEquals(5, sketch.estimate(Hashing.mix(1)));
+        assertEquals(1, sketch.estimate(Hashing.mix(2)));
+        assertEquals(0, sketch.estimate(Hashing.mix(3)));
+    }
+
+    @Test
+    void estimateNeverUndercountsAndStaysWithinBound() {
+
+        int width = 256;
+        CountMinSketch sketch = new CountMinSketch(4, width);
+        Map<Long, Long> counts = new HashMap<>();
+        long total = 0;
+        for (int i = 1; i <= 5_000; i++) {
+            long hash = Hashing.mix(i);
+            long count = 1 + 10_000 / i;
+            sketch.add(hash, count);
+            counts.put(hash, count);
+            total += count;
+        }
+
+        int withinBound = 0;
+        for (Map.Entry<Long, Long> count : counts.entrySet()) {
+            long estimate = sketch.estimate(count.getKey());
+            assertTrue(estimate >= count.getValue());
+            if (estimate - count.getValue() <= 2.72 * total / width) {
+                withinBound++;
+            }
+        }
+        assertTrue(withinBound >= counts.size() * 0.95);
+    }
+
+    @Test
+    void clearResetsCounters() {
+
+        CountMinSketch sketch = new CountMinSketch(4, 64);
+        long hash = Hashing.mix(1);
+        sketch.add(hash, 10);
+
+        sketch.clear();
+
+        assertEquals(0, sketch.estimate(hash));
+    }
+}
@@ -0,0 +1,98 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.IpAddresses;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    private static final int DENSE_SIZE = (1 << HyperLogLog.PRECISION) + 1;
+
+    @Test
+    void emptySketchIsSparse() {
+
+        byte[] bytes = new HyperLogLog().toBytes();
+
+        assertEquals(1, bytes.length);
+        assertEquals(0, HyperLogLog.fromBytes(bytes).estimate());
+    }
+
+    @Test
+    void smallSketchRoundTripsSparse() {
+
+        HyperLogLog sketch = sketchOf(0, 100);
+
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertTrue(bytes.length < DENSE_SIZE);
+        assertEquals(0, (bytes.length - 1) % 3);
+        assertEquals(sketch.estimate(), restored.estimate());
+        assertArrayEquals(bytes, restored.toBytes());
+    }
+
+    @Test
+    void largeSketchRoundTripsDense() {
+
+        HyperLogLog sketch = sketchOf(0, 100_000);
+
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertEquals(DENSE_SIZE, bytes.length);
+        assertEquals(sketch.estimate(), restored.estimate());
+        assertArrayEquals(bytes, restored.toBytes());
+    }
+
+    @Test
+    void estimateIsWithinErrorBounds() {
+
+        for (int count : new int[]{10, 1_000, 100_000}) {
+            long estimate = sketchOf(0, count).estimate();
+            assertTrue(Math.abs(estimate - count) <= Math.max(1, count * 0.05),
+                    "estimate " + estimate + " for " + count + " distinct values");
+        }
+    }
+
+    @Test
+    void addReportsChangesOnly() {
+
+        HyperLogLog sketch = new HyperLogLog();
+        long hash = Hashing.hash64(IpAddresses.parse("192.168.0.1"));
+
+        assertTrue(sketch.add(hash));
+        assertFalse(sketch.add(hash));
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+
+        HyperLogLog merged = sketchOf(0, 6_000);
+        merged.merge(sketchOf(4_000, 10_000));
+
+        assertArrayEquals(sketchOf(0, 10_000).toBytes(), merged.toBytes());
+    }
+
+    @Test
+    void mergeReportsChangesOnly() {
+
+        HyperLogLog sketch = sketchOf(0, 100);
+
+        assertTrue(sketch.merge(sketchOf(50, 150)));
+        assertFalse(sketch.merge(sketchOf(0, 150)));
+        assertFalse(sketch.merge(new HyperLogLog()));
+    }
+
+    private static HyperLogLog sketchOf(int from, int to) {
+
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) {
+            sketch.add(Hashing.hash64(IpAddresses.parse("10." + (i >> 16) + "." + (i >> 8 & 0xff) + "." + (i & 0xff))));
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,94 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlidingHeavyHittersTest {
+
+    private static final long WINDOW = 10_000;
+    private static final int SLOTS = 10;
+
+    private final SlidingHeavyHitters<String> hitters = new SlidingHeavyHitters<>(WINDOW, SLOTS, 4, 2048, 3);
+
+    @Test
+    void topReturnsMostFrequentKeysByCount() {
+
+        add("/events/1", 5, 0);
+        add("/events/2", 9, 0);
+        add("/events/3", 1, 0);
+        add("/events/4", 7, 0);
+
+        List<Map.Entry<String, Long>> top = hitters.top(2, 0);
+
+        assertEquals(2, top.size());
+        assertEntry(top.get(0), "/events/2", 9);
+        assertEntry(top.get(1), "/events/4", 7);
+    }
+
+    @Test
+    void countsAreSummedAcrossSlotsOfWindow() {
+
+        add("/events/1", 2, 0);
+        add("/events/1", 3, 4_000);
+        add("/events/1", 4, 9_999);
+
+        assertEntry(hitters.top(1, 9_999).get(0), "/events/1", 9);
+    }
+
+    @Test
+    void expiredSlotsLeaveWindow() {
+
+        add("/events/1", 5, 0);
+        add("/events/2", 1, 5_000);
+
+        List<Map.Entry<String, Long>> top = hitters.top(10, WINDOW + 1_000);
+
+        assertEquals(1, top.size());
+        assertEntry(top.get(0), "/events/2", 1);
+        assertTrue(hitters.top(10, 2 * WINDOW).isEmpty());
+    }
+
+    @Test
+    void reusedSlotForgetsOldPeriod() {
+
+        add("/events/1", 5, 0);
+        add("/events/2", 1, WINDOW);
+
+        List<Map.Entry<String, Long>> top = hitters.top(10, WINDOW);
+
+        assertEquals(1, top.size());
+        assertEntry(top.get(0), "/events/2", 1);
+    }
+
+    @Test
+    void heavyKeyDisplacesLightCandidates() {
+
+        add("/events/1", 1, 0);
+        add("/events/2", 1, 0);
+        add("/events/3", 1, 0);
+        add("/events/4", 5, 0);
+
+        List<Map.Entry<String, Long>> top = hitters.top(1, 0);
+
+        assertEntry(top.get(0), "/events/4", 5);
+    }
+
+    private void add(String key, int times, long now) {
+
+        for (int i = 0; i < times; i++) {
+            hitters.add(key, Hashing.hash64(key.getBytes(StandardCharsets.UTF_8)), now);
+        }
+    }
+
+    private static void assertEntry(Map.Entry<String, Long> entry, String key, long count) {
+
+        assertEquals(key, entry.getKey());
+        assertEquals(count, entry.getValue());
+    }
+}
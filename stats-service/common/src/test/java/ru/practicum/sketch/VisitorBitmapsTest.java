@@ -0,0 +1,51 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VisitorBitmapsTest {
+
+    @Test
+    void emptyBitmapRoundTrips() {
+
+        RoaringBitmap restored = VisitorBitmaps.fromBytes(VisitorBitmaps.toBytes(new RoaringBitmap()));
+
+        assertTrue(restored.isEmpty());
+    }
+
+    @Test
+    void sparseAndDenseIdsRoundTrip() {
+
+        RoaringBitmap bitmap = RoaringBitmap.bitmapOf(1, 7, 65_536, 1_000_000);
+        bitmap.add(200_000L, 300_000L);
+
+        RoaringBitmap restored = VisitorBitmaps.fromBytes(VisitorBitmaps.toBytes(bitmap));
+
+        assertEquals(bitmap, restored);
+        assertEquals(100_004, restored.getLongCardinality());
+    }
+
+    @Test
+    void consecutiveIdsAreStoredAsRuns() {
+
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.add(0L, 100_000L);
+
+        byte[] bytes = VisitorBitmaps.toBytes(bitmap);
+
+        assertTrue(bytes.length < 100, bytes.length + " bytes");
+        assertEquals(bitmap, VisitorBitmaps.fromBytes(bytes));
+    }
+
+    @Test
+    void mergedBitmapsCountDistinctVisitors() {
+
+        RoaringBitmap day1 = RoaringBitmap.bitmapOf(1, 2, 3);
+        RoaringBitmap day2 = VisitorBitmaps.fromBytes(VisitorBitmaps.toBytes(RoaringBitmap.bitmapOf(3, 4)));
+
+        assertEquals(4, RoaringBitmap.or(day1, day2).getLongCardinality());
+    }
+}
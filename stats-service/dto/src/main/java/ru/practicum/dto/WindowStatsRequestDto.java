@@ -0,0 +1,25 @@
+package ru.practicum.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class WindowStatsRequestDto {
+
+    @NotEmpty
+    @Size(max = 20)
+    List<@Valid WindowDto> windows;
+
+    List<String> uris;
+
+    Boolean unique;
+}
@@ -0,0 +1,18 @@
+package ru.practicum.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Non-blocking deployment of the stats server: WebFlux on top of R2DBC, with the same /hit, /hits
+ * and /stats contract and the same database as the servlet-based server. It is a reduced-feature
+ * variant, see {@link ru.practicum.reactive.service.ReactiveHitService} for what it leaves out.
+ */
+@EnableScheduling
+@SpringBootApplication
+public class ReactiveStatsServerApp {
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveStatsServerApp.class, args);
+    }
+}
@@ -0,0 +1,60 @@
+package ru.practicum.reactive.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.reactive.service.ReactiveHitService;
+
+import javax.validation.Valid;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+@Slf4j
+@RestController
+@Validated
+@RequiredArgsConstructor
+public class ReactiveHitController {
+
+    private final ReactiveHitService hitService;
+
+    @PostMapping("/hit")
+    @ResponseStatus(value = HttpStatus.CREATED)
+    public Mono<Void> addHit(@Valid @RequestBody HitDto hitDto) {
+
+        log.debug("Hit created");
+        return hitService.createHits(List.of(hitDto));
+    }
+
+    @PostMapping("/hits")
+    @ResponseStatus(value = HttpStatus.CREATED)
+    public Mono<Void> addHits(@RequestBody List<@Valid HitDto> hitDtos) {
+
+        log.debug("Hits created: {}", hitDtos.size());
+        return hitService.createHits(hitDtos);
+    }
+
+    /**
+     * Exact counts from hits; {@code approximate} is accepted for compatibility and ignored.
+     */
+    @GetMapping("/stats")
+    @ResponseStatus(value = HttpStatus.OK)
+    public Flux<StatsDto> getStats(@RequestParam("start") String start,
+                                   @RequestParam("end") String end,
+                                   @RequestParam(required = false) List<String> uris,
+                                   @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                   @RequestParam(required = false, defaultValue = "false") Boolean approximate) {
+
+        LocalDateTime startTime = LocalDateTime.parse(start, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        LocalDateTime endTime = LocalDateTime.parse(end, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+
+        log.info("Get stats");
+        return hitService.getStats(startTime, endTime, uris, unique);
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.reactive.model;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * A hit ready to be inserted, with app and uri already replaced by their dictionary ids.
+ */
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class HitRow {
+
+    Integer appId;
+
+    Integer uriId;
+
+    byte[] ip;
+
+    LocalDateTime timestamp;
+}
@@ -0,0 +1,42 @@
+package ru.practicum.reactive.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking access to the apps and uris lookup tables.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReactiveDictionaryRepository {
+
+    public static final String APPS = "apps";
+    public static final String URIS = "uris";
+
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Runs outside of any hits transaction, so an id handed out to the cache is always committed.
+     */
+    public Mono<Integer> findOrCreate(String table, String name) {
+
+        return databaseClient.sql("WITH inserted AS (INSERT INTO " + table + " (name) VALUES (:name) " +
+                        "ON CONFLICT (name) DO NOTHING RETURNING id) " +
+                        "SELECT id FROM inserted UNION ALL SELECT id FROM " + table + " WHERE name = :name")
+                .bind("name", name)
+                .map(row -> row.get("id", Integer.class))
+                .first()
+                // a concurrent insert committed after the statement snapshot is only visible to a new statement
+                .switchIfEmpty(Mono.defer(() -> findId(table, name)));
+    }
+
+    public Mono<Integer> findId(String table, String name) {
+
+        return databaseClient.sql("SELECT id FROM " + table + " WHERE name = :name")
+                .bind("name", name)
+                .map(row -> row.get("id", Integer.class))
+                .first();
+    }
+}
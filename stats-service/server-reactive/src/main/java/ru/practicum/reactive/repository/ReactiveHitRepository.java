@@ -0,0 +1,257 @@
+package ru.practicum.reactive.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.practicum.UriPatterns;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.model.HitRollup;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.UriTotal;
+import ru.practicum.reactive.model.HitRow;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.sketch.VisitorBitmaps;
+import ru.practicum.sql.HitStatements;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+
+/**
+ * Writes hits together with their hit_rollups and, when enabled, hit_sketches, hit_bitmaps and uri_totals updates, and reads stats, through
+ * R2DBC, with the statements of the servlet-based server from {@link HitStatements}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReactiveHitRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<Void> insertHits(List<HitRow> hits) {
+
+        List<String> rows = new ArrayList<>(hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            rows.add("(:app" + i + ", :uri" + i + ", :ip" + i + ", :ts" + i + ")");
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("INSERT INTO hits (app_id, uri_id, ip, time_stamp) VALUES " +
+                String.join(", ", rows));
+        for (int i = 0; i < hits.size(); i++) {
+            HitRow hit = hits.get(i);
+            spec = spec.bind("app" + i, hit.getAppId())
+                    .bind("uri" + i, hit.getUriId())
+                    .bind("ip" + i, hit.getIp())
+                    .bind("ts" + i, hit.getTimestamp());
+        }
+        return spec.then();
+    }
+
+    /**
+     * @param counts rollup increments in {@link HitRollup#LOCK_ORDER}, so that concurrent writers cannot deadlock
+     */
+    public Mono<Void> incrementRollups(Map<HitRollup, Long> counts) {
+
+        return Flux.fromIterable(HitStatements.chunks(new ArrayList<>(counts.entrySet())))
+                .concatMap(rows -> statement(HitStatements.incrementRollups(rows.size()), HitStatements.incrementRollupsParams(rows)).then())
+                .then();
+    }
+
+    /**
+     * Merges batch sketches into day or month sketches, the rows stay locked until the surrounding transaction ends.
+     *
+     * @param sketches sketches of the batch in {@link HitRollup#LOCK_ORDER}, keys of DAY granularity
+     */
+    public Mono<Void> addToSketches(String table, Map<HitRollup, HyperLogLog> sketches) {
+
+        return mergeBuckets(table, HitStatements.SKETCH_COLUMN, new HyperLogLog().toBytes(), sketches.keySet(), (key, stored) -> {
+            HyperLogLog sketch = HyperLogLog.fromBytes(stored);
+            return sketch.merge(sketches.get(key)) ? sketch.toBytes() : null;
+        });
+    }
+
+    /**
+     * Ids of visitor ips in visitor_ids. Only ips that have no id yet are inserted, in byte order,
+     * so concurrent writers cannot deadlock on them.
+     */
+    public Mono<Map<ByteBuffer, Integer>> findOrCreateVisitorIds(Collection<ByteBuffer> ips) {
+
+        return findVisitorIds(ips).flatMap(ids -> {
+            if (ids.size() == ips.size()) {
+                return Mono.just(ids);
+            }
+            List<byte[]> inserts = new ArrayList<>();
+            for (ByteBuffer ip : new TreeSet<>(ips)) {
+                if (!ids.containsKey(ip)) {
+                    inserts.add(ip.array());
+                }
+            }
+            return Flux.fromIterable(HitStatements.chunks(inserts))
+                    .concatMap(rows -> statement(HitStatements.insertVisitorIds(rows.size()), HitStatements.ipParams(rows)).then())
+                    .then(findVisitorIds(ips));
+        });
+    }
+
+    /**
+     * Adds visitor ids to day bitmaps, the rows stay locked until the surrounding transaction ends.
+     *
+     * @param visitors visitor ids per bitmap in {@link HitRollup#LOCK_ORDER}, keys of DAY granularity
+     */
+    public Mono<Void> addToBitmaps(Map<HitRollup, RoaringBitmap> visitors) {
+
+        return mergeBuckets(HitStatements.BITMAPS, HitStatements.BITMAP_COLUMN, VisitorBitmaps.toBytes(new RoaringBitmap()),
+                visitors.keySet(), (key, stored) -> {
+                    RoaringBitmap bitmap = VisitorBitmaps.fromBytes(stored);
+                    long before = bitmap.getLongCardinality();
+                    bitmap.or(visitors.get(key));
+                    return bitmap.getLongCardinality() == before ? null : VisitorBitmaps.toBytes(bitmap);
+                });
+    }
+
+    /**
+     * Adds the totals to uri_totals, counting as unique only the visitors that are new to uri_visitors.
+     *
+     * @param totals hits, first and last hit per app and uri, in key order
+     * @param visitors rows of app id, uri id and visitor id, in key order
+     */
+    public Mono<Void> incrementTotals(Collection<UriTotal> totals, Collection<List<Integer>> visitors) {
+
+        return Flux.fromIterable(HitStatements.chunks(new ArrayList<>(visitors)))
+                .concatMap(rows -> statement(HitStatements.addUriVisitors(rows.size()), HitStatements.uriVisitorParams(rows))
+                        .map(row -> List.of(row.get("app_id", Integer.class), row.get("uri_id", Integer.class)))
+                        .all())
+                .collect(HashMap<List<Integer>, Long>::new, (counts, key) -> counts.merge(key, 1L, Long::sum))
+                .flatMap(newVisitors -> {
+                    List<UriTotal> increments = new ArrayList<>(totals.size());
+                    for (UriTotal total : totals) {
+                        increments.add(new UriTotal(total.getAppId(), total.getUriId(), total.getHits(),
+                                newVisitors.getOrDefault(List.of(total.getAppId(), total.getUriId()), 0L),
+                                total.getFirstHit(), total.getLastHit()));
+                    }
+                    return Flux.fromIterable(HitStatements.chunks(increments))
+                            .concatMap(rows -> statement(HitStatements.incrementUriTotals(rows.size()), HitStatements.uriTotalParams(rows)).then())
+                            .then();
+                });
+    }
+
+    /**
+     * Exact counts straight from hits, emitted while the result is read. A uri ending with
+     * {@code *} matches every uri with that prefix, as in the servlet-based server.
+     *
+     * @param uris uris to count, null for all uris
+     */
+    public Flux<StatsDto> findStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+
+        List<String> names = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        Map<String, String> params = new HashMap<>();
+        if (uris != null) {
+            for (String uri : uris) {
+                if (UriPatterns.isPrefix(uri)) {
+                    String prefix = UriPatterns.prefix(uri);
+                    String prefixEnd = UriPatterns.prefixEnd(prefix);
+                    int i = conditions.size();
+                    params.put("prefix" + i, prefix);
+                    if (prefixEnd == null) {
+                        conditions.add("u.name ~>=~ :prefix" + i);
+                    } else {
+                        params.put("prefixEnd" + i, prefixEnd);
+                        conditions.add("(u.name ~>=~ :prefix" + i + " AND u.name ~<~ :prefixEnd" + i + ")");
+                    }
+                } else {
+                    names.add(uri);
+                }
+            }
+            if (!names.isEmpty()) {
+                conditions.add("u.name = ANY(:uris::varchar[])");
+            }
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("SELECT a.name AS app, u.name AS uri, " +
+                        (unique ? "COUNT(DISTINCT h.ip)" : "COUNT(*)") + " AS hits FROM hits h " +
+                        "JOIN apps a ON a.id = h.app_id " +
+                        "JOIN uris u ON u.id = h.uri_id " +
+                        "WHERE h.time_stamp BETWEEN :start AND :end" +
+                        (uris != null ? " AND (" + String.join(" OR ", conditions) + ")" : "") +
+                        " GROUP BY a.name, u.name ORDER BY hits DESC")
+                .bind("start", start)
+                .bind("end", end);
+        if (!names.isEmpty()) {
+            spec = spec.bind("uris", names.toArray(new String[0]));
+        }
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            spec = spec.bind(param.getKey(), param.getValue());
+        }
+        return spec.map(row -> new StatsDto(row.get("app", String.class), row.get("uri", String.class), row.get("hits", Long.class)))
+                .all();
+    }
+
+    /**
+     * Merges into bucket rows the way HitSketchRepository and HitBitmapRepository do: per chunk, the
+     * missing rows are created, all rows are read and locked in one statement, and the changed ones
+     * are written back in one statement.
+     *
+     * @param merge returns the new value of a bucket, or null if it did not change
+     */
+    private Mono<Void> mergeBuckets(String table, String column, byte[] empty, Collection<HitRollup> keys,
+                                    BiFunction<HitRollup, byte[], byte[]> merge) {
+
+        return Flux.fromIterable(HitStatements.chunks(new ArrayList<>(keys)))
+                .concatMap(rows -> statement(HitStatements.insertEmptyBuckets(table, column, rows.size()), HitStatements.bucketParams(rows))
+                        .bind("empty", empty)
+                        .then()
+                        .thenMany(statement(HitStatements.lockBuckets(table, column, rows.size()), HitStatements.bucketParams(rows))
+                                .map(row -> Map.entry(
+                                        new HitRollup(RollupGranularity.DAY, row.get("bucket_start", LocalDateTime.class),
+                                                row.get("app_id", Integer.class), row.get("uri_id", Integer.class)),
+                                        row.get(column, byte[].class)))
+                                .all())
+                        .collectList()
+                        .flatMap(stored -> {
+                            List<Map.Entry<HitRollup, byte[]>> updates = new ArrayList<>();
+                            for (Map.Entry<HitRollup, byte[]> bucket : stored) {
+                                byte[] merged = merge.apply(bucket.getKey(), bucket.getValue());
+                                if (merged != null) {
+                                    updates.add(Map.entry(bucket.getKey(), merged));
+                                }
+                            }
+                            if (updates.isEmpty()) {
+                                return Mono.<Void>empty();
+                            }
+                            return statement(HitStatements.updateBuckets(table, column, updates.size()),
+                                    HitStatements.bucketValueParams(updates)).then();
+                        }))
+                .then();
+    }
+
+    private Mono<Map<ByteBuffer, Integer>> findVisitorIds(Collection<ByteBuffer> ips) {
+
+        List<byte[]> values = new ArrayList<>(ips.size());
+        for (ByteBuffer ip : ips) {
+            values.add(ip.array());
+        }
+        return Flux.fromIterable(HitStatements.chunks(values))
+                .concatMap(chunk -> databaseClient.sql(HitStatements.FIND_VISITOR_IDS)
+                        .bind("ips", chunk)
+                        .map(row -> Map.entry(ByteBuffer.wrap(row.get("ip", byte[].class)), row.get("id", Integer.class)))
+                        .all())
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    private DatabaseClient.GenericExecuteSpec statement(String sql, Map<String, Object> params) {
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql);
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            spec = spec.bind(param.getKey(), param.getValue());
+        }
+        return spec;
+    }
+}
@@ -0,0 +1,182 @@
+package ru.practicum.reactive.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.practicum.IpAddresses;
+import ru.practicum.dto.HitDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.HitRollup;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.UriTotal;
+import ru.practicum.reactive.model.HitRow;
+import ru.practicum.reactive.repository.ReactiveDictionaryRepository;
+import ru.practicum.reactive.repository.ReactiveHitRepository;
+import ru.practicum.sketch.Hashing;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.sql.HitStatements;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ru.practicum.model.RollupGranularity.DAY;
+
+/**
+ * Reduced-feature counterpart of the servlet-based HitServiceImpl: hits are written per request
+ * batch, with no buffer, hit log, duplicate filter, stats cache or trending counters, and stats are
+ * always counted from hits. The sketches, bitmaps and totals follow the same
+ * {@code stats.*.enabled} flags as the servlet-based server, which must be set alike for both
+ * deployments of one database; enabled, each request batch is folded into them. Late hits written
+ * here do not invalidate the stats cache of a servlet-based server reading the same database.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReactiveHitService {
+
+    private static final int MAX_BATCH = 1000;
+
+    private static final Comparator<List<Integer>> URI_ORDER = Comparator.<List<Integer>, Integer>comparing(key -> key.get(0))
+            .thenComparing(key -> key.get(1));
+    private static final Comparator<List<Integer>> VISITOR_ORDER = URI_ORDER.thenComparing(key -> key.get(2));
+
+    private final ReactiveDictionaryRepository dictionaryRepository;
+    private final ReactiveHitRepository hitRepository;
+    private final TransactionalOperator transactionalOperator;
+
+    private final Map<String, Integer> appIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> uriIds = new ConcurrentHashMap<>();
+
+    @Value("${stats.sketches.enabled:false}")
+    private boolean sketchesEnabled;
+
+    @Value("${stats.bitmaps.enabled:false}")
+    private boolean bitmapsEnabled;
+
+    @Value("${stats.totals.enabled:false}")
+    private boolean totalsEnabled;
+
+    public Mono<Void> createHits(List<HitDto> hitDtos) {
+
+        return Flux.fromIterable(hitDtos)
+                .concatMap(this::toRow)
+                .buffer(MAX_BATCH)
+                .concatMap(this::write)
+                .then();
+    }
+
+    public Flux<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+
+        if (start.isAfter(end)) {
+            return Flux.error(new ValidationException("Start must be after End"));
+        }
+        return hitRepository.findStats(start, end, uris == null || uris.isEmpty() ? null : uris, unique);
+    }
+
+    /**
+     * Same writes as the servlet-based HitWriter, in one transaction: the hits and their rollup
+     * increments, then whichever of the day and month sketches, visitor bitmaps and all-time uri
+     * totals are enabled.
+     */
+    private Mono<Void> write(List<HitRow> hits) {
+
+        Map<HitRollup, Long> counts = new TreeMap<>(HitRollup.LOCK_ORDER);
+        for (HitRow hit : hits) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                counts.merge(new HitRollup(granularity, granularity.floor(hit.getTimestamp()), hit.getAppId(), hit.getUriId()),
+                        1L, Long::sum);
+            }
+        }
+
+        Mono<Void> write = hitRepository.insertHits(hits)
+                .then(hitRepository.incrementRollups(counts));
+        if (sketchesEnabled) {
+            write = write.then(addToSketches(hits));
+        }
+        if (bitmapsEnabled || totalsEnabled) {
+            write = write.then(addToVisitors(hits));
+        }
+        return transactionalOperator.transactional(write);
+    }
+
+    private Mono<Void> addToSketches(List<HitRow> hits) {
+
+        Map<HitRollup, HyperLogLog> days = new TreeMap<>(HitRollup.LOCK_ORDER);
+        Map<HitRollup, HyperLogLog> months = new TreeMap<>(HitRollup.LOCK_ORDER);
+        for (HitRow hit : hits) {
+            long hash = Hashing.hash64(hit.getIp());
+            days.computeIfAbsent(new HitRollup(DAY, DAY.floor(hit.getTimestamp()), hit.getAppId(), hit.getUriId()),
+                    key -> new HyperLogLog()).add(hash);
+            months.computeIfAbsent(new HitRollup(DAY, hit.getTimestamp().toLocalDate().withDayOfMonth(1).atStartOfDay(),
+                    hit.getAppId(), hit.getUriId()), key -> new HyperLogLog()).add(hash);
+        }
+        return hitRepository.addToSketches(HitStatements.DAY_SKETCHES, days)
+                .then(hitRepository.addToSketches(HitStatements.MONTH_SKETCHES, months));
+    }
+
+    private Mono<Void> addToVisitors(List<HitRow> hits) {
+
+        Set<ByteBuffer> ips = new LinkedHashSet<>();
+        Map<List<Integer>, UriTotal> totals = new TreeMap<>(URI_ORDER);
+        for (HitRow hit : hits) {
+            ips.add(ByteBuffer.wrap(hit.getIp()));
+            totals.merge(List.of(hit.getAppId(), hit.getUriId()),
+                    new UriTotal(hit.getAppId(), hit.getUriId(), 1L, 0L, hit.getTimestamp(), hit.getTimestamp()),
+                    (a, b) -> new UriTotal(a.getAppId(), a.getUriId(), a.getHits() + b.getHits(), 0L,
+                            a.getFirstHit().isBefore(b.getFirstHit()) ? a.getFirstHit() : b.getFirstHit(),
+                            a.getLastHit().isAfter(b.getLastHit()) ? a.getLastHit() : b.getLastHit()));
+        }
+
+        return hitRepository.findOrCreateVisitorIds(ips)
+                .flatMap(visitorIds -> {
+                    Map<HitRollup, RoaringBitmap> visitors = new TreeMap<>(HitRollup.LOCK_ORDER);
+                    Set<List<Integer>> uriVisitors = new TreeSet<>(VISITOR_ORDER);
+                    for (HitRow hit : hits) {
+                        Integer visitorId = visitorIds.get(ByteBuffer.wrap(hit.getIp()));
+                        visitors.computeIfAbsent(new HitRollup(DAY, DAY.floor(hit.getTimestamp()), hit.getAppId(), hit.getUriId()),
+                                key -> new RoaringBitmap()).add(visitorId);
+                        uriVisitors.add(List.of(hit.getAppId(), hit.getUriId(), visitorId));
+                    }
+                    return (bitmapsEnabled ? hitRepository.addToBitmaps(visitors) : Mono.<Void>empty())
+                            .then(totalsEnabled ? hitRepository.incrementTotals(totals.values(), uriVisitors) : Mono.<Void>empty());
+                });
+    }
+
+    private Mono<HitRow> toRow(HitDto hitDto) {
+
+        byte[] ip;
+        try {
+            ip = IpAddresses.parse(hitDto.getIp());
+        } catch (ValidationException e) {
+            return Mono.error(e);
+        }
+
+        return id(appIds, ReactiveDictionaryRepository.APPS, hitDto.getApp())
+                .zipWith(id(uriIds, ReactiveDictionaryRepository.URIS, hitDto.getUri()))
+                .map(ids -> new HitRow(ids.getT1(), ids.getT2(), ip, hitDto.getTimestamp()));
+    }
+
+    private Mono<Integer> id(Map<String, Integer> cache, String table, String name) {
+
+        Integer id = cache.get(name);
+        if (id != null) {
+            return Mono.just(id);
+        }
+        return dictionaryRepository.findOrCreate(table, name)
+                .doOnNext(created -> cache.put(name, created));
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.reactive.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.ReactiveHealthIndicator;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reports DOWN while the last partition maintenance run failed.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReactivePartitionHealthIndicator implements ReactiveHealthIndicator {
+
+    private final ReactivePartitionService partitionService;
+
+    @Override
+    public Mono<Health> health() {
+
+        String failure = partitionService.getLastFailure();
+        if (failure == null) {
+            return Mono.just(Health.up().build());
+        }
+        return Mono.just(Health.down()
+                .withDetail("error", failure)
+                .withDetail("at", String.valueOf(partitionService.getLastFailureAt()))
+                .build());
+    }
+}
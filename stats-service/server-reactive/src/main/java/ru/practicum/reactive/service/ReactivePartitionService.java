@@ -0,0 +1,228 @@
+package ru.practicum.reactive.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.practicum.sql.PartitionStatements;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Partition maintenance of the reactive deployment, with the shared statements and the policy of the
+ * servlet-based HitPartitionService, so either server can run alone against the shared database.
+ * Runs on the scheduler thread and blocks there; request handling is not affected.
+ */
+@Slf4j
+@Service
+public class ReactivePartitionService {
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean detach;
+    private final Counter failures;
+
+    private volatile String lastFailure;
+    private volatile LocalDateTime lastFailureAt;
+
+    public ReactivePartitionService(DatabaseClient databaseClient,
+                                    TransactionalOperator transactionalOperator,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${stats.partitions.months-ahead:3}") int monthsAhead,
+                                    @Value("${stats.partitions.retention-months:0}") int retentionMonths,
+                                    @Value("${stats.partitions.retention-action:DROP}") String retentionAction) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.detach = "DETACH".equals(retentionAction);
+        this.failures = meterRegistry.counter("stats.partitions.failures");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${stats.partitions.maintenance-cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+
+        String failure = null;
+        try {
+            YearMonth current = YearMonth.now();
+            List<YearMonth> existing = findPartitions().block();
+
+            TreeSet<YearMonth> missing = new TreeSet<>(findDefaultMonths().block());
+            for (int i = 0; i <= monthsAhead; i++) {
+                missing.add(current.plusMonths(i));
+            }
+            missing.removeAll(existing);
+
+            for (YearMonth month : missing) {
+                try {
+                    if (Boolean.TRUE.equals(createPartition(month).block())) {
+                        log.info("Created hits partition for {}", month);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Could not create hits partition for {}: {}", month, e.getMessage());
+                    failures.increment();
+                    failure = String.format("Could not create hits partition for %s: %s", month, e.getMessage());
+                }
+            }
+
+            if (retentionMonths > 0) {
+                failure = applyRetention(current.minusMonths(retentionMonths), failure);
+            }
+        } catch (RuntimeException e) {
+            log.error("Hits partition maintenance failed: {}", e.getMessage());
+            failures.increment();
+            failure = "Hits partition maintenance failed: " + e.getMessage();
+        }
+
+        if (failure != null) {
+            lastFailure = failure;
+            lastFailureAt = LocalDateTime.now();
+        } else {
+            lastFailure = null;
+            lastFailureAt = null;
+        }
+    }
+
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    public LocalDateTime getLastFailureAt() {
+        return lastFailureAt;
+    }
+
+    private String applyRetention(YearMonth oldestKept, String failure) {
+
+        for (YearMonth month : findPartitions().block()) {
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+            try {
+                detachPartition(month).block();
+            } catch (RuntimeException e) {
+                log.error("Could not detach hits partition for {}: {}", month, e.getMessage());
+                failures.increment();
+                failure = String.format("Could not detach hits partition for %s: %s", month, e.getMessage());
+            }
+        }
+
+        for (YearMonth month : findDetached().block()) {
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+            try {
+                if (Boolean.TRUE.equals(removeDetached(month).block())) {
+                    log.info(detach ? "Detached hits partition for {}" : "Dropped hits partition for {}", month);
+                }
+            } catch (RuntimeException e) {
+                log.error("Could not apply retention to hits partition for {}: {}", month, e.getMessage());
+                failures.increment();
+                failure = String.format("Could not apply retention to hits partition for %s: %s", month, e.getMessage());
+            }
+        }
+        return failure;
+    }
+
+    private Mono<List<YearMonth>> findPartitions() {
+
+        return databaseClient.sql(PartitionStatements.FIND_PARTITIONS)
+                .map(row -> row.get("relname", String.class))
+                .all()
+                .collectList()
+                .map(PartitionStatements::toMonths);
+    }
+
+    private Mono<List<YearMonth>> findDefaultMonths() {
+
+        return databaseClient.sql(PartitionStatements.FIND_DEFAULT_MONTHS)
+                .map(row -> YearMonth.from(row.get("month", LocalDateTime.class)))
+                .all()
+                .collectList();
+    }
+
+    private Mono<Boolean> createPartition(YearMonth month) {
+
+        Mono<Boolean> create = execute(PartitionStatements.LOCK_DEFAULT)
+                .then(databaseClient.sql(PartitionStatements.partitionExists(month))
+                        .map(row -> row.get(0, Boolean.class))
+                        .one())
+                .flatMap(exists -> exists
+                        ? Mono.just(false)
+                        : Flux.fromIterable(PartitionStatements.createPartitionFromDefault(month))
+                        .concatMap(this::execute)
+                        .then(Mono.just(true)));
+        return transactionalOperator.transactional(create);
+    }
+
+    /**
+     * Detaches the partition outside of a transaction, as HitPartitionRepository does.
+     *
+     * @return false if the partition is not attached, e.g. because another server detached it first
+     */
+    private Mono<Boolean> detachPartition(YearMonth month) {
+
+        return isPartition(month)
+                .flatMap(attached -> !attached
+                        ? Mono.just(false)
+                        : databaseClient.sql(PartitionStatements.HAS_DEFAULT_PARTITION)
+                        .map(row -> row.get(0, Boolean.class))
+                        .one()
+                        .flatMap(hasDefault -> execute(PartitionStatements.detachPartition(month, !hasDefault)))
+                        .then(Mono.just(true))
+                        .onErrorResume(e -> isPartition(month).flatMap(still -> still ? Mono.error(e) : Mono.just(false))));
+    }
+
+    private Mono<List<YearMonth>> findDetached() {
+
+        return databaseClient.sql(PartitionStatements.FIND_DETACHED)
+                .map(row -> row.get("relname", String.class))
+                .all()
+                .collectList()
+                .map(PartitionStatements::toMonths);
+    }
+
+    /**
+     * Takes the hits of a detached partition out of the all-time totals and the derived tables, then
+     * drops it or marks it as retained out, in one transaction that does not lock hits.
+     *
+     * @return false if another server handled the table first
+     */
+    private Mono<Boolean> removeDetached(YearMonth month) {
+
+        Mono<Boolean> subtract = execute(PartitionStatements.LOCK_TOTALS)
+                .then(findDetached())
+                .flatMap(detached -> !detached.contains(month)
+                        ? Mono.just(false)
+                        : Flux.fromIterable(PartitionStatements.subtractFromTotals(month))
+                        .concatWith(Flux.fromIterable(PartitionStatements.removeDerived(month)))
+                        .concatMap(this::execute)
+                        .then(execute(detach ? PartitionStatements.markRetainedOut(month) : PartitionStatements.dropPartition(month)))
+                        .then(Mono.just(true)));
+        return transactionalOperator.transactional(subtract);
+    }
+
+    private Mono<Boolean> isPartition(YearMonth month) {
+
+        return databaseClient.sql(PartitionStatements.isPartition(month))
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    private Mono<Void> execute(String sql) {
+        return databaseClient.sql(sql).then();
+    }
+}
@@ -0,0 +1,65 @@
+-- Query plan and latency benchmark for the stats-service query shapes.
+--
+-- Run against an empty scratch database, never against a real stats database:
+--   createdb stats-bench
+--   psql -d stats-bench -f stats-service/server/benchmark/stats-queries.sql > stats-queries.out
+--
+-- The script applies the SQL migrations of stats-service/common/src/main/resources/db/migration
+-- that Flyway runs at startup, generates 10M hits over nine months with a skewed uri distribution,
+-- and prints EXPLAIN (ANALYZE, BUFFERS) for every query the server runs, first with index scans
+-- disabled (sequential scan baseline) and then with the indexes. V1 only creates the baseline
+-- table that V2 moves aside, and the Java migration V3 has no rows to encode in an empty
+-- database, so both are left out.
+
+\set ON_ERROR_STOP on
+\ir ../../common/src/main/resources/db/migration/V2__dictionary_partitioned_hits.sql
+\ir ../../common/src/main/resources/db/migration/V4__derived_tables.sql
+
+DO $$
+DECLARE
+	month date;
+BEGIN
+	FOR month IN SELECT generate_series(date '2026-01-01', date '2026-09-01', interval '1 month')::date LOOP
+		EXECUTE format('CREATE TABLE IF NOT EXISTS hits_p%s PARTITION OF hits FOR VALUES FROM (%L) TO (%L)',
+			to_char(month, 'YYYY_MM'), month, (month + interval '1 month')::date);
+	END LOOP;
+END $$;
+
+\timing on
+
+INSERT INTO apps (name) VALUES ('ewm-main-service');
+INSERT INTO uris (name) SELECT '/events/' || n FROM generate_series(1, 10000) AS n;
+
+INSERT INTO hits (app_id, uri_id, ip, time_stamp)
+SELECT (SELECT id FROM apps WHERE name = 'ewm-main-service'),
+	1 + floor(power(random(), 3) * 10000)::int,
+	decode('00000000000000000000ffff0a' || lpad(to_hex(floor(random() * 16777216)::int), 6, '0'), 'hex'),
+	date_trunc('second', timestamp '2026-01-01' + random() * interval '270 days')
+FROM generate_series(1, 10000000);
+
+INSERT INTO hit_rollups (granularity, bucket_start, app_id, uri_id, hits)
+SELECT 'MINUTE', date_trunc('minute', time_stamp), app_id, uri_id, COUNT(*) FROM hits
+GROUP BY date_trunc('minute', time_stamp), app_id, uri_id;
+
+INSERT INTO hit_rollups (granularity, bucket_start, app_id, uri_id, hits)
+SELECT 'HOUR', date_trunc('hour', time_stamp), app_id, uri_id, COUNT(*) FROM hits
+GROUP BY date_trunc('hour', time_stamp), app_id, uri_id;
+
+INSERT INTO hit_rollups (granularity, bucket_start, app_id, uri_id, hits)
+SELECT 'DAY', date_trunc('day', time_stamp), app_id, uri_id, COUNT(*) FROM hits
+GROUP BY date_trunc('day', time_stamp), app_id, uri_id;
+
+VACUUM ANALYZE hits;
+VACUUM ANALYZE hit_rollups;
+
+\echo '=== baseline: sequential scans ==='
+SET enable_indexscan = off;
+SET enable_indexonlyscan = off;
+SET enable_bitmapscan = off;
+\ir stats-query-shapes.sql
+
+\echo '=== covering indexes ==='
+RESET enable_indexscan;
+RESET enable_indexonlyscan;
+RESET enable_bitmapscan;
+\ir stats-query-shapes.sql
@@ -0,0 +1,56 @@
+-- The statements issued by HitRepository and HitStatsRepository, with typical parameters:
+-- the whole history as requested by ewm-service and a one day window. Uris are already
+-- resolved to their dictionary ids, as the server does before querying.
+
+\echo '--- all uris, unique ip, whole history'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app_id, uri_id, COUNT(DISTINCT ip) FROM hits
+WHERE time_stamp BETWEEN '1970-01-01 00:00:00' AND '2026-10-01 00:00:00'
+GROUP BY app_id, uri_id ORDER BY COUNT(DISTINCT ip) DESC;
+
+\echo '--- all uris, unique ip, one day'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app_id, uri_id, COUNT(DISTINCT ip) FROM hits
+WHERE time_stamp BETWEEN '2026-05-10 00:00:00' AND '2026-05-10 23:59:59'
+GROUP BY app_id, uri_id ORDER BY COUNT(DISTINCT ip) DESC;
+
+\echo '--- ten uris, unique ip, whole history'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app_id, uri_id, COUNT(DISTINCT ip) FROM hits
+WHERE time_stamp BETWEEN '1970-01-01 00:00:00' AND '2026-10-01 00:00:00'
+AND uri_id IN (1, 2, 3, 4, 5, 6, 7, 8, 9, 10)
+GROUP BY app_id, uri_id ORDER BY COUNT(DISTINCT ip) DESC;
+
+\echo '--- ten uris, all hits, whole history, raw'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app_id, uri_id, COUNT(ip) FROM hits
+WHERE time_stamp BETWEEN '1970-01-01 00:00:00' AND '2026-10-01 00:00:00'
+AND uri_id IN (1, 2, 3, 4, 5, 6, 7, 8, 9, 10)
+GROUP BY app_id, uri_id ORDER BY COUNT(ip) DESC;
+
+\echo '--- all uris, all hits, whole history, raw'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app_id, uri_id, COUNT(ip) FROM hits
+WHERE time_stamp BETWEEN '1970-01-01 00:00:00' AND '2026-10-01 00:00:00'
+GROUP BY app_id, uri_id ORDER BY COUNT(ip) DESC;
+
+\echo '--- ten uris, all hits, rollups with raw edges'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT s.app_id, s.uri_id, SUM(s.hits) AS hits FROM (
+	SELECT app_id, uri_id, hits FROM hit_rollups
+	WHERE granularity = 'DAY' AND bucket_start >= '1970-01-01 00:00:00' AND bucket_start < '2026-05-10 00:00:00'
+	AND uri_id IN (1, 2, 3, 4, 5, 6, 7, 8, 9, 10)
+	UNION ALL
+	SELECT app_id, uri_id, hits FROM hit_rollups
+	WHERE granularity = 'HOUR' AND bucket_start >= '2026-05-10 00:00:00' AND bucket_start < '2026-05-10 13:00:00'
+	AND uri_id IN (1, 2, 3, 4, 5, 6, 7, 8, 9, 10)
+	UNION ALL
+	SELECT app_id, uri_id, hits FROM hit_rollups
+	WHERE granularity = 'MINUTE' AND bucket_start >= '2026-05-10 13:00:00' AND bucket_start < '2026-05-10 13:42:00'
+	AND uri_id IN (1, 2, 3, 4, 5, 6, 7, 8, 9, 10)
+	UNION ALL
+	SELECT app_id, uri_id, COUNT(*) AS hits FROM hits
+	WHERE time_stamp >= '2026-05-10 13:42:00' AND time_stamp < '2026-05-10 13:42:17'
+	AND uri_id IN (1, 2, 3, 4, 5, 6, 7, 8, 9, 10)
+	GROUP BY app_id, uri_id
+) AS s GROUP BY s.app_id, s.uri_id ORDER BY hits DESC;
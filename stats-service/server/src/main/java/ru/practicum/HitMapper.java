@@ -3,41 +3,29 @@ package ru.practicum;
 import ru.practicum.dto.HitDto;
 import ru.practicum.model.Hit;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class HitMapper {
 
-    public static HitDto returnHitDto(Hit hit) {
+    public static HitDto returnHitDto(Hit hit, String app, String uri) {
 
         HitDto hitDto = HitDto.builder()
                 .id(hit.getId())
-                .app(hit.getApp())
-                .uri(hit.getUri())
-                .ip(hit.getIp())
+                .app(app)
+                .uri(uri)
+                .ip(IpAddresses.format(hit.getIp()))
                 .timestamp(hit.getTimestamp())
                 .build();
         return hitDto;
     }
 
-    public static Hit returnHit(HitDto hitDto) {
+    public static Hit returnHit(HitDto hitDto, Integer appId, Integer uriId) {
 
         Hit hit = Hit.builder()
                 .id(hitDto.getId())
-                .app(hitDto.getApp())
-                .uri(hitDto.getUri())
-                .ip(hitDto.getIp())
+                .appId(appId)
+                .uriId(uriId)
+                .ip(IpAddresses.parse(hitDto.getIp()))
                 .timestamp(hitDto.getTimestamp())
                 .build();
         return hit;
     }
-
-    public static List<HitDto> returnHitDtoList(Iterable<Hit> hits) {
-        List<HitDto> result = new ArrayList<>();
-
-        for (Hit hit : hits) {
-            result.add(returnHitDto(hit));
-        }
-        return result;
-    }
 }
\ No newline at end of file
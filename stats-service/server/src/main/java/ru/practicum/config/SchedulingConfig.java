@@ -0,0 +1,25 @@
+package ru.practicum.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+@Configuration
+public class SchedulingConfig {
+
+    /**
+     * Runs the buffer flush, hit log replay and partition maintenance side by side, so a slow
+     * partition DDL or replay never holds back flushing. The default scheduler has a single thread.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${stats.scheduling.pool-size:4}") int poolSize) {
+
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("stats-scheduler-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        return scheduler;
+    }
+}
@@ -1,44 +1,166 @@
 package ru.practicum.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.config.WebConfig;
+import ru.practicum.dto.HistogramDto;
 import ru.practicum.dto.HitDto;
+import ru.practicum.dto.IpStatsDto;
 import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.WindowStatsDto;
+import ru.practicum.dto.WindowStatsRequestDto;
+import ru.practicum.model.RollupGranularity;
 import ru.practicum.service.HitService;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Positive;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 @Slf4j
 @RestController
+@Validated
 @RequiredArgsConstructor
 public class HitController {
 
     private final HitService hitService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
     @ResponseStatus(value = HttpStatus.CREATED)
     public void addHit(@Valid @RequestBody HitDto hitDto) {
 
-        log.info("Hit created");
+        log.debug("Hit created");
         hitService.createHit(hitDto);
     }
 
+    @PostMapping("/hits")
+    @ResponseStatus(value = HttpStatus.CREATED)
+    public void addHits(@RequestBody List<@Valid HitDto> hitDtos) {
+
+        log.debug("Hits created: {}", hitDtos.size());
+        hitService.createHits(hitDtos);
+    }
+
+    /**
+     * A uri ending with {@code *}, such as {@code /events/*}, matches every uri with that prefix.
+     */
     @GetMapping("/stats")
     @ResponseStatus(value = HttpStatus.OK)
     public List<StatsDto> getStats(@RequestParam("start") String start,
                                    @RequestParam("end") String end,
                                    @RequestParam(required = false) List<String> uris,
-                                   @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+                                   @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                   @RequestParam(required = false, defaultValue = "false") Boolean approximate) {
 
         LocalDateTime startTime = LocalDateTime.parse(start, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
         LocalDateTime endTime = LocalDateTime.parse(end, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
 
         log.info("Get stats");
-        return hitService.getStats(startTime, endTime, uris, unique);
+        return hitService.getStats(startTime, endTime, uris, unique, approximate);
+    }
+
+    /**
+     * Same stats as {@link #getStats}, written one JSON object per line. Chosen by content negotiation
+     * when {@code application/x-ndjson} is preferred over JSON in the Accept header; rows read from the
+     * database are written while the cursor is read, the stats cache is never used.
+     */
+    @GetMapping(value = "/stats", produces = WebConfig.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStats(@RequestParam("start") String start,
+                                                             @RequestParam("end") String end,
+                                                             @RequestParam(required = false) List<String> uris,
+                                                             @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                                             @RequestParam(required = false, defaultValue = "false") Boolean approximate) {
+
+        LocalDateTime startTime = LocalDateTime.parse(start, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        LocalDateTime endTime = LocalDateTime.parse(end, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+
+        log.info("Stream stats");
+        return ResponseEntity.ok()
+                .contentType(WebConfig.APPLICATION_NDJSON)
+                .body(outputStream -> {
+                    NdjsonStatsWriter writer = new NdjsonStatsWriter(outputStream, objectMapper);
+                    hitService.streamStats(startTime, endTime, uris, unique, approximate, writer);
+                    writer.finish();
+                });
+    }
+
+    /**
+     * Most hit uris, optionally limited to uris starting with {@code prefix}. The range defaults
+     * to the current day.
+     */
+    @GetMapping("/stats/top")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<StatsDto> getTopStats(@RequestParam(required = false) String start,
+                                      @RequestParam(required = false) String end,
+                                      @RequestParam(required = false) String prefix,
+                                      @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                      @RequestParam(required = false, defaultValue = "10") @Positive @Max(1000) Integer limit) {
+
+        LocalDateTime startTime = start == null ? LocalDate.now().atStartOfDay()
+                : LocalDateTime.parse(start, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        LocalDateTime endTime = end == null ? LocalDateTime.now().withNano(0)
+                : LocalDateTime.parse(end, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+
+        log.info("Get top {} stats", limit);
+        return hitService.getTopStats(startTime, endTime, prefix, unique, limit);
+    }
+
+    @GetMapping("/stats/histogram")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<HistogramDto> getHistogram(@RequestParam("start") String start,
+                                           @RequestParam("end") String end,
+                                           @RequestParam List<String> uris,
+                                           @RequestParam(required = false, defaultValue = "HOUR") RollupGranularity granularity,
+                                           @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+
+        LocalDateTime startTime = LocalDateTime.parse(start, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        LocalDateTime endTime = LocalDateTime.parse(end, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+
+        log.info("Get histogram");
+        return hitService.getHistogram(startTime, endTime, uris, granularity, unique);
+    }
+
+    /**
+     * Counts the same uris over several named windows, for example the last hour, day and all time,
+     * and returns the stats per window in request order.
+     */
+    @PostMapping("/stats/windows")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<WindowStatsDto> getWindowStats(@Valid @RequestBody WindowStatsRequestDto request) {
+
+        log.info("Get stats for {} windows", request.getWindows().size());
+        return hitService.getWindowStats(request.getWindows(), request.getUris(), Boolean.TRUE.equals(request.getUnique()));
+    }
+
+    /**
+     * Estimated hits of the hottest uris over the last few minutes, from memory only.
+     */
+    @GetMapping("/stats/trending")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<StatsDto> getTrendingUris(@RequestParam(required = false, defaultValue = "10") @Positive @Max(100) Integer limit) {
+
+        log.info("Get trending uris");
+        return hitService.getTrendingUris(limit);
+    }
+
+    /**
+     * Estimated hits of the most active source ips over the last few minutes, from memory only.
+     */
+    @GetMapping("/stats/trending/ips")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<IpStatsDto> getTrendingIps(@RequestParam(required = false, defaultValue = "10") @Positive @Max(100) Integer limit) {
+
+        log.info("Get trending ips");
+        return hitService.getTrendingIps(limit);
     }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package ru.practicum.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.practicum.dto.StatsDto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes every row to the response as soon as it is produced, one JSON object per line.
+ * Nothing is flushed before the first row, so failures before it are still reported by the
+ * error handler.
+ */
+class NdjsonStatsWriter implements Consumer<StatsDto> {
+
+    private final OutputStream outputStream;
+    private final ObjectMapper objectMapper;
+
+    NdjsonStatsWriter(OutputStream outputStream, ObjectMapper objectMapper) {
+        this.outputStream = outputStream;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void accept(StatsDto stats) {
+
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(stats));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void finish() throws IOException {
+
+        outputStream.flush();
+    }
+}
@@ -0,0 +1,191 @@
+package ru.practicum.hitlog;
+
+import ru.practicum.model.Hit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+/**
+ * One pre-allocated, memory-mapped file of fixed-width hit records:
+ * crc32 (4) | app id (4) | uri id (4) | ip (16) | epoch second (8). Slots are written in order,
+ * so the first slot whose checksum does not match marks the end of the written part; the checksum
+ * of an all-zero, never written slot is never zero.
+ * <p>
+ * {@link #close()} releases the mapping right away instead of leaving it to the garbage collector,
+ * which would keep the memory and, for deleted segments, the disk space in use. The segment must
+ * not be accessed after it has been closed.
+ */
+public final class HitLogSegment implements Closeable {
+
+    public static final int RECORD_SIZE = 36;
+
+    private static final int IP_SIZE = 16;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+    private final long index;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private HitLogSegment(long index, Path path, FileChannel channel, long size) throws IOException {
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.capacity = (int) (size / RECORD_SIZE);
+    }
+
+    public static HitLogSegment create(Path dir, long index, int size) throws IOException {
+
+        Path path = dir.resolve(String.format("%s%020d%s", PREFIX, index, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new HitLogSegment(index, path, channel, size - size % RECORD_SIZE);
+    }
+
+    public static HitLogSegment open(Path path) throws IOException {
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new HitLogSegment(index(path), path, channel, channel.size());
+    }
+
+    public static boolean isSegment(Path path) {
+
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    public static long index(Path path) {
+
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void write(int slot, Hit hit) {
+
+        int offset = slot * RECORD_SIZE;
+        buffer.putInt(offset + 4, hit.getAppId());
+        buffer.putInt(offset + 8, hit.getUriId());
+        for (int i = 0; i < IP_SIZE; i++) {
+            buffer.put(offset + 12 + i, hit.getIp()[i]);
+        }
+        buffer.putLong(offset + 28, hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+        // the checksum goes last, a torn record is then never taken for a written one
+        buffer.putInt(offset, checksum(offset));
+    }
+
+    /**
+     * @return the hit in the slot, null if the slot has not been written completely
+     */
+    public Hit read(int slot) {
+
+        int offset = slot * RECORD_SIZE;
+        int crc = buffer.getInt(offset);
+        if (crc != checksum(offset)) {
+            return null;
+        }
+
+        byte[] ip = new byte[IP_SIZE];
+        for (int i = 0; i < IP_SIZE; i++) {
+            ip[i] = buffer.get(offset + 12 + i);
+        }
+        return Hit.builder()
+                .appId(buffer.getInt(offset + 4))
+                .uriId(buffer.getInt(offset + 8))
+                .ip(ip)
+                .timestamp(LocalDateTime.ofEpochSecond(buffer.getLong(offset + 28), 0, ZoneOffset.UTC))
+                .build();
+    }
+
+    /**
+     * @return the first slot that has not been written, used to resume appending after a restart
+     */
+    public int findEnd() {
+
+        int slot = 0;
+        while (slot < capacity && read(slot) != null) {
+            slot++;
+        }
+        return slot;
+    }
+
+    public void force() {
+        buffer.force();
+    }
+
+    public void delete() throws IOException {
+
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        channel.close();
+        unmap(buffer);
+    }
+
+    private static void unmap(MappedByteBuffer buffer) throws IOException {
+
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            throw new IOException("Could not unmap hit log segment", e);
+        }
+    }
+
+    /**
+     * sun.misc.Unsafe#invokeCleaner, the only way to unmap a buffer before Java 14 without opening
+     * internal packages. Null if the JDK does not provide it.
+     */
+    private static MethodHandle findCleaner() {
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private int checksum(int offset) {
+
+        CRC32 crc = new CRC32();
+        for (int i = 4; i < RECORD_SIZE; i++) {
+            crc.update(buffer.get(offset + i));
+        }
+        return (int) crc.getValue();
+    }
+}
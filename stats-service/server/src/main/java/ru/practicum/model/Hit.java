@@ -18,18 +18,19 @@ import java.time.LocalDateTime;
 public class Hit {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "hits_seq")
+    @SequenceGenerator(name = "hits_seq", sequenceName = "hits_seq", allocationSize = 50)
     @EqualsAndHashCode.Include
     Long id;
 
-    @Column(name = "app", nullable = false)
-    String app;
+    @Column(name = "app_id", nullable = false)
+    Integer appId;
 
-    @Column(name = "uri", nullable = false)
-    String uri;
+    @Column(name = "uri_id", nullable = false)
+    Integer uriId;
 
     @Column(name = "ip", nullable = false)
-    String ip;
+    byte[] ip;
 
     @Column(name = "time_stamp", nullable = false)
     LocalDateTime timestamp;
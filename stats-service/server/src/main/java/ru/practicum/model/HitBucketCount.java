@@ -0,0 +1,23 @@
+package ru.practicum.model;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Hits of one app and uri within one histogram bucket, still in dictionary-encoded form.
+ */
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class HitBucketCount {
+
+    LocalDateTime bucketStart;
+
+    Integer appId;
+
+    Integer uriId;
+
+    Long hits;
+}
@@ -0,0 +1,19 @@
+package ru.practicum.model;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Aggregated hits of one app and uri, still in dictionary-encoded form.
+ */
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class HitCount {
+
+    Integer appId;
+
+    Integer uriId;
+
+    Long hits;
+}
@@ -0,0 +1,67 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.UriPatterns;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Lookup tables that map app and uri strings to the integer keys stored in hits.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DictionaryRepository {
+
+    public static final String APPS = "apps";
+    public static final String URIS = "uris";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Commits the new entry on its own, so an id handed out to the cache never disappears
+     * together with a rolled back hits transaction.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Integer findOrCreate(String table, String name) {
+
+        jdbcTemplate.update("INSERT INTO " + table + " (name) VALUES (?) ON CONFLICT (name) DO NOTHING", name);
+        return jdbcTemplate.queryForObject("SELECT id FROM " + table + " WHERE name = ?", Integer.class, name);
+    }
+
+    public Integer findId(String table, String name) {
+
+        List<Integer> ids = jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE name = ?", Integer.class, name);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    public String findName(String table, Integer id) {
+
+        List<String> names = jdbcTemplate.queryForList("SELECT name FROM " + table + " WHERE id = ?", String.class, id);
+        return names.isEmpty() ? null : names.get(0);
+    }
+
+    /**
+     * Reads the prefix as a byte-wise range, which the text_pattern_ops index on name answers
+     * even from a generic plan, unlike a LIKE pattern bound as a parameter.
+     */
+    public List<Integer> findIdsByPrefix(String table, String prefix) {
+
+        String end = UriPatterns.prefixEnd(prefix);
+        if (end == null) {
+            return jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE name ~>=~ ?", Integer.class, prefix);
+        }
+        return jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE name ~>=~ ? AND name ~<~ ?", Integer.class, prefix, end);
+    }
+
+    public void findAll(String table, BiConsumer<Integer, String> consumer) {
+
+        jdbcTemplate.query("SELECT id, name FROM " + table, rs -> {
+            consumer.accept(rs.getInt("id"), rs.getString("name"));
+        });
+    }
+}
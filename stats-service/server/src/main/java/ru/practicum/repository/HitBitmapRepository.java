@@ -0,0 +1,152 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.HitRollup;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.sketch.VisitorBitmaps;
+import ru.practicum.sql.HitStatements;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class HitBitmapRepository {
+
+    private static final int BACKFILL_FETCH_SIZE = 10000;
+    private static final String INSERT = "INSERT INTO hit_bitmaps (bucket_start, app_id, uri_id, visitors) " +
+            "VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (bucket_start, app_id, uri_id) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Adds visitor ids to the stored day bitmaps. The bitmap rows are locked while they are merged,
+     * keys must come in {@link HitRollup#LOCK_ORDER} so that concurrent writers cannot deadlock.
+     */
+    public void add(Map<HitRollup, RoaringBitmap> visitors) {
+
+        byte[] empty = VisitorBitmaps.toBytes(new RoaringBitmap());
+        List<Map.Entry<HitRollup, byte[]>> updates = new ArrayList<>();
+        for (List<HitRollup> keys : HitStatements.chunks(new ArrayList<>(visitors.keySet()))) {
+            Map<String, Object> params = HitStatements.bucketParams(keys);
+            params.put("empty", empty);
+            namedJdbcTemplate.update(HitStatements.insertEmptyBuckets(HitStatements.BITMAPS, HitStatements.BITMAP_COLUMN, keys.size()),
+                    params);
+
+            namedJdbcTemplate.query(HitStatements.lockBuckets(HitStatements.BITMAPS, HitStatements.BITMAP_COLUMN, keys.size()), params, rs -> {
+                HitRollup key = new HitRollup(RollupGranularity.DAY, rs.getTimestamp("bucket_start").toLocalDateTime(),
+                        rs.getInt("app_id"), rs.getInt("uri_id"));
+                RoaringBitmap bitmap = VisitorBitmaps.fromBytes(rs.getBytes(HitStatements.BITMAP_COLUMN));
+
+                long before = bitmap.getLongCardinality();
+                bitmap.or(visitors.get(key));
+                if (bitmap.getLongCardinality() != before) {
+                    updates.add(Map.entry(key, VisitorBitmaps.toBytes(bitmap)));
+                }
+            });
+        }
+
+        for (List<Map.Entry<HitRollup, byte[]>> values : HitStatements.chunks(updates)) {
+            namedJdbcTemplate.update(HitStatements.updateBuckets(HitStatements.BITMAPS, HitStatements.BITMAP_COLUMN, values.size()),
+                    HitStatements.bucketValueParams(values));
+        }
+    }
+
+    public void mergeBitmaps(Map<List<Integer>, RoaringBitmap> bitmaps, LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+
+        MapSqlParameterSource params = rangeParams(from, to, uriIds);
+        String sql = "SELECT app_id, uri_id, visitors FROM hit_bitmaps " +
+                "WHERE bucket_start >= :from AND bucket_start < :to" +
+                (uriIds != null ? " AND " + HitStatsRepository.URI_FILTER : "");
+
+        namedJdbcTemplate.query(sql, params, rs -> {
+            bitmaps.computeIfAbsent(List.of(rs.getInt("app_id"), rs.getInt("uri_id")), key -> new RoaringBitmap())
+                    .or(VisitorBitmaps.fromBytes(rs.getBytes("visitors")));
+        });
+    }
+
+    public void mergeRawVisitors(Map<List<Integer>, RoaringBitmap> bitmaps, LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+
+        MapSqlParameterSource params = rangeParams(from, to, uriIds);
+        String sql = "SELECT DISTINCT h.app_id, h.uri_id, v.id FROM hits h " +
+                "JOIN visitor_ids v ON v.ip = h.ip " +
+                "WHERE h.time_stamp >= :from AND h.time_stamp < :to" +
+                (uriIds != null ? " AND h." + HitStatsRepository.URI_FILTER : "");
+
+        namedJdbcTemplate.query(sql, params, rs -> {
+            bitmaps.computeIfAbsent(List.of(rs.getInt("app_id"), rs.getInt("uri_id")), key -> new RoaringBitmap())
+                    .add(rs.getInt("id"));
+        });
+    }
+
+    /**
+     * Builds the bitmaps of all existing hits once, when hit_bitmaps is still empty. Rows are read
+     * in key order through a cursor, so only one bitmap is held in memory at a time.
+     */
+    @Transactional
+    public void backfill() {
+
+        Boolean empty = jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM hit_bitmaps)", Boolean.class);
+        if (!Boolean.TRUE.equals(empty)) {
+            return;
+        }
+
+        log.info("Building visitor bitmaps of existing hits");
+        JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursor.setFetchSize(BACKFILL_FETCH_SIZE);
+
+        List<Object[]> inserts = new ArrayList<>();
+        Object[] key = new Object[3];
+        RoaringBitmap[] bitmap = {null};
+        cursor.query("SELECT date_trunc('day', h.time_stamp) AS bucket_start, h.app_id, h.uri_id, v.id FROM hits h " +
+                "JOIN visitor_ids v ON v.ip = h.ip " +
+                "ORDER BY 1, 2, 3", rs -> {
+            Timestamp bucketStart = rs.getTimestamp("bucket_start");
+            int appId = rs.getInt("app_id");
+            int uriId = rs.getInt("uri_id");
+            if (bitmap[0] == null || !bucketStart.equals(key[0]) || appId != (int) key[1] || uriId != (int) key[2]) {
+                if (bitmap[0] != null) {
+                    inserts.add(new Object[]{key[0], key[1], key[2], VisitorBitmaps.toBytes(bitmap[0])});
+                }
+                key[0] = bucketStart;
+                key[1] = appId;
+                key[2] = uriId;
+                bitmap[0] = new RoaringBitmap();
+            }
+            bitmap[0].add(rs.getInt("id"));
+
+            if (inserts.size() == BACKFILL_FETCH_SIZE) {
+                jdbcTemplate.batchUpdate(INSERT, inserts);
+                inserts.clear();
+            }
+        });
+        if (bitmap[0] != null) {
+            inserts.add(new Object[]{key[0], key[1], key[2], VisitorBitmaps.toBytes(bitmap[0])});
+        }
+        jdbcTemplate.batchUpdate(INSERT, inserts);
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        if (uriIds != null) {
+            params.addValue("uriIds", HitStatsRepository.toArray(uriIds));
+        }
+        return params;
+    }
+}
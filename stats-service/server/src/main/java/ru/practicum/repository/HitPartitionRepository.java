@@ -0,0 +1,115 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.sql.PartitionStatements;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Monthly range partitions of the hits table.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitPartitionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<YearMonth> findPartitions() {
+        return PartitionStatements.toMonths(jdbcTemplate.queryForList(PartitionStatements.FIND_PARTITIONS, String.class));
+    }
+
+    /**
+     * Months of the rows that fell into hits_default because no partition covered them yet,
+     * for example hits with an old client-supplied timestamp.
+     */
+    public List<YearMonth> findDefaultMonths() {
+
+        List<YearMonth> months = new ArrayList<>();
+        for (Timestamp month : jdbcTemplate.queryForList(PartitionStatements.FIND_DEFAULT_MONTHS, Timestamp.class)) {
+            months.add(YearMonth.from(month.toLocalDateTime()));
+        }
+        return months;
+    }
+
+    /**
+     * @return false if another server created the partition first
+     */
+    @Transactional
+    public boolean createPartition(YearMonth month) {
+
+        jdbcTemplate.execute(PartitionStatements.LOCK_DEFAULT);
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(PartitionStatements.partitionExists(month), Boolean.class))) {
+            return false;
+        }
+        for (String statement : PartitionStatements.createPartitionFromDefault(month)) {
+            jdbcTemplate.execute(statement);
+        }
+        return true;
+    }
+
+    /**
+     * Detaches the partition from hits without reading its rows, see {@link PartitionStatements#detachPartition}.
+     * Runs outside of a transaction, which the concurrent form requires.
+     *
+     * @return false if the partition is not attached, e.g. because another server detached it first
+     */
+    public boolean detachPartition(YearMonth month) {
+
+        if (!isPartition(month)) {
+            return false;
+        }
+        boolean concurrently = !Boolean.TRUE.equals(jdbcTemplate.queryForObject(PartitionStatements.HAS_DEFAULT_PARTITION, Boolean.class));
+        try {
+            jdbcTemplate.execute(PartitionStatements.detachPartition(month, concurrently));
+        } catch (DataAccessException e) {
+            if (isPartition(month)) {
+                throw e;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Months of the tables that have been detached but not yet subtracted, including those left behind
+     * by a run that stopped between the two steps.
+     */
+    public List<YearMonth> findDetached() {
+        return PartitionStatements.toMonths(jdbcTemplate.queryForList(PartitionStatements.FIND_DETACHED, String.class));
+    }
+
+    /**
+     * Takes the hits of a detached partition out of the all-time totals and the derived tables, then
+     * drops it or marks it as retained out. Reads only the detached table and the indexes of hits,
+     * inserts into hits go on meanwhile.
+     *
+     * @return false if another server handled the table first
+     */
+    @Transactional
+    public boolean removeDetached(YearMonth month, boolean drop) {
+
+        jdbcTemplate.execute(PartitionStatements.LOCK_TOTALS);
+        if (!findDetached().contains(month)) {
+            return false;
+        }
+        for (String statement : PartitionStatements.subtractFromTotals(month)) {
+            jdbcTemplate.execute(statement);
+        }
+        for (String statement : PartitionStatements.removeDerived(month)) {
+            jdbcTemplate.execute(statement);
+        }
+        jdbcTemplate.execute(drop ? PartitionStatements.dropPartition(month) : PartitionStatements.markRetainedOut(month));
+        return true;
+    }
+
+    private boolean isPartition(YearMonth month) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(PartitionStatements.isPartition(month), Boolean.class));
+    }
+}
@@ -0,0 +1,40 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.Hit;
+import ru.practicum.model.HitRollup;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.sql.HitStatements;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Repository
+@RequiredArgsConstructor
+public class HitRollupRepository {
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Adds the hits to every rollup bucket they fall into. Rows are updated in a fixed order
+     * so that concurrent batches touching the same buckets cannot deadlock.
+     */
+    public void increment(List<Hit> hits) {
+
+        Map<HitRollup, Long> counts = new TreeMap<>(HitRollup.LOCK_ORDER);
+        for (Hit hit : hits) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                HitRollup rollup = new HitRollup(granularity, granularity.floor(hit.getTimestamp()), hit.getAppId(), hit.getUriId());
+                counts.merge(rollup, 1L, Long::sum);
+            }
+        }
+
+        for (List<Map.Entry<HitRollup, Long>> rows : HitStatements.chunks(new ArrayList<>(counts.entrySet()))) {
+            namedJdbcTemplate.update(HitStatements.incrementRollups(rows.size()), HitStatements.incrementRollupsParams(rows));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.HitRollup;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.sketch.Hashing;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.sql.HitStatements;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Day sketches live in hit_sketches, month sketches holding the same hashes in hit_month_sketches.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class HitSketchRepository {
+
+    public static final String DAYS = HitStatements.DAY_SKETCHES;
+    public static final String MONTHS = HitStatements.MONTH_SKETCHES;
+
+    private static final int BACKFILL_FETCH_SIZE = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Merges the sketches of a batch into the stored sketches of one table. The sketch rows are locked while
+     * they are merged, keys must come in {@link HitRollup#LOCK_ORDER} so that concurrent writers cannot deadlock.
+     */
+    public void add(String table, Map<HitRollup, HyperLogLog> sketches) {
+
+        byte[] empty = new HyperLogLog().toBytes();
+        List<Map.Entry<HitRollup, byte[]>> updates = new ArrayList<>();
+        for (List<HitRollup> keys : HitStatements.chunks(new ArrayList<>(sketches.keySet()))) {
+            Map<String, Object> params = HitStatements.bucketParams(keys);
+            params.put("empty", empty);
+            namedJdbcTemplate.update(HitStatements.insertEmptyBuckets(table, HitStatements.SKETCH_COLUMN, keys.size()), params);
+
+            namedJdbcTemplate.query(HitStatements.lockBuckets(table, HitStatements.SKETCH_COLUMN, keys.size()), params, rs -> {
+                HitRollup key = new HitRollup(RollupGranularity.DAY, rs.getTimestamp("bucket_start").toLocalDateTime(),
+                        rs.getInt("app_id"), rs.getInt("uri_id"));
+                HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes(HitStatements.SKETCH_COLUMN));
+                if (sketch.merge(sketches.get(key))) {
+                    updates.add(Map.entry(key, sketch.toBytes()));
+                }
+            });
+        }
+
+        for (List<Map.Entry<HitRollup, byte[]>> values : HitStatements.chunks(updates)) {
+            namedJdbcTemplate.update(HitStatements.updateBuckets(table, HitStatements.SKETCH_COLUMN, values.size()),
+                    HitStatements.bucketValueParams(values));
+        }
+    }
+
+    public void mergeSketches(String table, Map<List<Integer>, HyperLogLog> sketches, LocalDateTime from, LocalDateTime to,
+                              List<Integer> uriIds) {
+
+        MapSqlParameterSource params = rangeParams(from, to, uriIds);
+        String sql = "SELECT app_id, uri_id, registers FROM " + table + " " +
+                "WHERE bucket_start >= :from AND bucket_start < :to" +
+                (uriIds != null ? " AND " + HitStatsRepository.URI_FILTER : "");
+
+        namedJdbcTemplate.query(sql, params, rs -> {
+            sketches.computeIfAbsent(List.of(rs.getInt("app_id"), rs.getInt("uri_id")), key -> new HyperLogLog())
+                    .merge(HyperLogLog.fromBytes(rs.getBytes("registers")));
+        });
+    }
+
+    public void mergeRawIps(Map<List<Integer>, HyperLogLog> sketches, LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+
+        MapSqlParameterSource params = rangeParams(from, to, uriIds);
+        String sql = "SELECT DISTINCT app_id, uri_id, ip FROM hits " +
+                "WHERE time_stamp >= :from AND time_stamp < :to" +
+                (uriIds != null ? " AND " + HitStatsRepository.URI_FILTER : "");
+
+        namedJdbcTemplate.query(sql, params, rs -> {
+            sketches.computeIfAbsent(List.of(rs.getInt("app_id"), rs.getInt("uri_id")), key -> new HyperLogLog())
+                    .add(Hashing.hash64(rs.getBytes("ip")));
+        });
+    }
+
+    /**
+     * Builds the sketches of all existing hits once, when the table is still empty. Rows are read
+     * in key order through a cursor, so only one sketch is held in memory at a time.
+     *
+     * @param unit date_trunc unit of the table's buckets
+     */
+    @Transactional
+    public void backfill(String table, String unit) {
+
+        Boolean empty = jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM " + table + ")", Boolean.class);
+        if (!Boolean.TRUE.equals(empty)) {
+            return;
+        }
+
+        log.info("Building {} of existing hits", table);
+        JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursor.setFetchSize(BACKFILL_FETCH_SIZE);
+
+        String insert = insertSql(table);
+        List<Object[]> inserts = new ArrayList<>();
+        Object[] key = new Object[3];
+        HyperLogLog[] sketch = {null};
+        cursor.query("SELECT date_trunc('" + unit + "', time_stamp) AS bucket_start, app_id, uri_id, ip FROM hits " +
+                "ORDER BY 1, 2, 3", rs -> {
+            Timestamp bucketStart = rs.getTimestamp("bucket_start");
+            int appId = rs.getInt("app_id");
+            int uriId = rs.getInt("uri_id");
+            if (sketch[0] == null || !bucketStart.equals(key[0]) || appId != (int) key[1] || uriId != (int) key[2]) {
+                if (sketch[0] != null) {
+                    inserts.add(new Object[]{key[0], key[1], key[2], sketch[0].toBytes()});
+                }
+                key[0] = bucketStart;
+                key[1] = appId;
+                key[2] = uriId;
+                sketch[0] = new HyperLogLog();
+            }
+            sketch[0].add(Hashing.hash64(rs.getBytes("ip")));
+
+            if (inserts.size() == BACKFILL_FETCH_SIZE) {
+                jdbcTemplate.batchUpdate(insert, inserts);
+                inserts.clear();
+            }
+        });
+        if (sketch[0] != null) {
+            inserts.add(new Object[]{key[0], key[1], key[2], sketch[0].toBytes()});
+        }
+        jdbcTemplate.batchUpdate(insert, inserts);
+    }
+
+    private static String insertSql(String table) {
+        return "INSERT INTO " + table + " (bucket_start, app_id, uri_id, registers) VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT (bucket_start, app_id, uri_id) DO NOTHING";
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        if (uriIds != null) {
+            params.addValue("uriIds", HitStatsRepository.toArray(uriIds));
+        }
+        return params;
+    }
+}
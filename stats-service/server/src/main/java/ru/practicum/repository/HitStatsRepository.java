@@ -0,0 +1,285 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.HitBucketCount;
+import ru.practicum.model.HitCount;
+import ru.practicum.model.RollupGranularity;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Answers hit count queries from hit_rollups. The requested range is split into the coarsest
+ * buckets that fit into it; only the parts shorter than a minute at both edges are read from hits.
+ */
+@Repository
+public class HitStatsRepository {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+    /**
+     * The uri ids are bound as one array parameter, a list would become one bind parameter per uri
+     * and fail beyond the 32767 parameters Postgres accepts in a statement.
+     */
+    static final String URI_FILTER = "uri_id = ANY(:uriIds::integer[])";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+
+    public HitStatsRepository(NamedParameterJdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(STREAM_FETCH_SIZE);
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(streaming);
+    }
+
+    /**
+     * @param uriIds uris to count, null for all uris
+     */
+    public List<HitCount> findStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = buildStatsSql(start, end, uriIds, true, params);
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> readCount(rs));
+    }
+
+    /**
+     * Same as {@link #findStats}, but hands rows over while the cursor is read. Must run inside
+     * a transaction, otherwise the Postgres driver loads the whole result before returning.
+     *
+     * @param ordered whether rows must come sorted by hits, callers that rank rows themselves skip the sort
+     */
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean ordered, Consumer<HitCount> consumer) {
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = buildStatsSql(start, end, uriIds, ordered, params);
+        streamingJdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(readCount(rs));
+        });
+    }
+
+    /**
+     * Counts straight from hits, for unique counts and when rollups are not used.
+     *
+     * @param uriIds uris to count, null for all uris
+     */
+    public List<HitCount> findRawStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique) {
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = buildRawStatsSql(start, end, uriIds, unique, true, params);
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> readCount(rs));
+    }
+
+    /**
+     * Same as {@link #findRawStats}, but hands rows over while the cursor is read.
+     */
+    public void streamRawStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique, boolean ordered,
+                               Consumer<HitCount> consumer) {
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = buildRawStatsSql(start, end, uriIds, unique, ordered, params);
+        streamingJdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(readCount(rs));
+        });
+    }
+
+    /**
+     * Distinct ips per app and uri for several windows in a single scan of hits: the range covering
+     * all windows is read once and every window is a FILTER on the aggregate.
+     *
+     * @return counts per window in the order of {@code starts}, each sorted by hits descending
+     */
+    public List<List<HitCount>> findUniqueWindowStats(List<LocalDateTime> starts, List<LocalDateTime> ends, List<Integer> uriIds) {
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Collections.min(starts))
+                .addValue("to", Collections.max(ends));
+        if (uriIds != null) {
+            params.addValue("uriIds", toArray(uriIds));
+        }
+
+        List<String> columns = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); i++) {
+            params.addValue("start" + i, starts.get(i));
+            params.addValue("end" + i, ends.get(i));
+            columns.add("COUNT(DISTINCT ip) FILTER (WHERE time_stamp BETWEEN :start" + i + " AND :end" + i + ") AS hits" + i);
+        }
+
+        String sql = "SELECT app_id, uri_id, " + String.join(", ", columns) + " FROM hits " +
+                "WHERE time_stamp BETWEEN :from AND :to" +
+                (uriIds != null ? " AND " + URI_FILTER : "") +
+                " GROUP BY app_id, uri_id";
+
+        List<List<HitCount>> result = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); i++) {
+            result.add(new ArrayList<>());
+        }
+        jdbcTemplate.query(sql, params, rs -> {
+            for (int i = 0; i < starts.size(); i++) {
+                long hits = rs.getLong("hits" + i);
+                if (hits > 0) {
+                    result.get(i).add(new HitCount(rs.getInt("app_id"), rs.getInt("uri_id"), hits));
+                }
+            }
+        });
+        for (List<HitCount> counts : result) {
+            counts.sort(Comparator.comparing(HitCount::getHits).reversed());
+        }
+        return result;
+    }
+
+    /**
+     * Hits per rollup bucket for buckets starting in [from, to).
+     */
+    public List<HitBucketCount> findHistogram(RollupGranularity granularity, LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("uriIds", toArray(uriIds));
+
+        return jdbcTemplate.query("SELECT bucket_start, app_id, uri_id, hits FROM hit_rollups " +
+                        "WHERE granularity = :granularity AND " + URI_FILTER + " " +
+                        "AND bucket_start >= :from AND bucket_start < :to " +
+                        "ORDER BY uri_id, app_id, bucket_start",
+                params, (rs, rowNum) -> readBucketCount(rs));
+    }
+
+    /**
+     * Distinct ips per bucket for hits in [from, to). Distinct counts of buckets cannot be combined,
+     * so these are read from hits through the uri and time stamp index.
+     */
+    public List<HitBucketCount> findUniqueHistogram(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                                                    List<Integer> uriIds) {
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("unit", granularity.name().toLowerCase())
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("uriIds", toArray(uriIds));
+
+        return jdbcTemplate.query("SELECT date_trunc(:unit, time_stamp) AS bucket_start, app_id, uri_id, " +
+                        "COUNT(DISTINCT ip) AS hits FROM hits " +
+                        "WHERE " + URI_FILTER + " AND time_stamp >= :from AND time_stamp < :to " +
+                        "GROUP BY 1, app_id, uri_id",
+                params, (rs, rowNum) -> readBucketCount(rs));
+    }
+
+    static Integer[] toArray(List<Integer> uriIds) {
+        return uriIds.toArray(new Integer[0]);
+    }
+
+    private HitBucketCount readBucketCount(ResultSet rs) throws SQLException {
+        return new HitBucketCount(rs.getTimestamp("bucket_start").toLocalDateTime(),
+                rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits"));
+    }
+
+    private HitCount readCount(ResultSet rs) throws SQLException {
+        return new HitCount(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits"));
+    }
+
+    private String buildRawStatsSql(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique, boolean ordered,
+                                    MapSqlParameterSource params) {
+
+        params.addValue("start", start)
+                .addValue("end", end);
+        if (uriIds != null) {
+            params.addValue("uriIds", toArray(uriIds));
+        }
+        return "SELECT app_id, uri_id, " + (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") + " AS hits FROM hits " +
+                "WHERE time_stamp BETWEEN :start AND :end" +
+                (uriIds != null ? " AND " + URI_FILTER : "") +
+                " GROUP BY app_id, uri_id" +
+                (ordered ? " ORDER BY hits DESC" : "");
+    }
+
+    private String buildStatsSql(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean ordered,
+                                 MapSqlParameterSource params) {
+
+        boolean filterUris = uriIds != null;
+        if (filterUris) {
+            params.addValue("uriIds", toArray(uriIds));
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        // timestamps are stored with second precision, so the inclusive end becomes an exclusive one
+        split(start, end.plusSeconds(1), 0, segments);
+
+        List<String> parts = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            params.addValue("from" + i, segment.from);
+            params.addValue("to" + i, segment.to);
+
+            if (segment.granularity == null) {
+                parts.add("SELECT app_id, uri_id, COUNT(*) AS hits FROM hits " +
+                        "WHERE time_stamp >= :from" + i + " AND time_stamp < :to" + i +
+                        (filterUris ? " AND " + URI_FILTER : "") +
+                        " GROUP BY app_id, uri_id");
+            } else {
+                params.addValue("granularity" + i, segment.granularity.name());
+                parts.add("SELECT app_id, uri_id, hits FROM hit_rollups " +
+                        "WHERE granularity = :granularity" + i +
+                        " AND bucket_start >= :from" + i + " AND bucket_start < :to" + i +
+                        (filterUris ? " AND " + URI_FILTER : ""));
+            }
+        }
+
+        return "SELECT s.app_id, s.uri_id, SUM(s.hits) AS hits FROM (" +
+                String.join(" UNION ALL ", parts) +
+                ") AS s GROUP BY s.app_id, s.uri_id" +
+                (ordered ? " ORDER BY hits DESC" : "");
+    }
+
+    /**
+     * Splits [from, to) into the coarsest aligned buckets, in time order. Segments without a
+     * granularity are read from hits.
+     */
+    static void split(LocalDateTime from, LocalDateTime to, int level, List<Segment> segments) {
+
+        if (!from.isBefore(to)) {
+            return;
+        }
+
+        RollupGranularity[] granularities = RollupGranularity.values();
+        if (level == granularities.length) {
+            segments.add(new Segment(null, from, to));
+            return;
+        }
+
+        RollupGranularity granularity = granularities[level];
+        LocalDateTime bucketsFrom = granularity.ceil(from);
+        LocalDateTime bucketsTo = granularity.floor(to);
+
+        if (bucketsFrom.isBefore(bucketsTo)) {
+            split(from, bucketsFrom, level + 1, segments);
+            segments.add(new Segment(granularity, bucketsFrom, bucketsTo));
+            split(bucketsTo, to, level + 1, segments);
+        } else {
+            split(from, to, level + 1, segments);
+        }
+    }
+
+    static final class Segment {
+
+        final RollupGranularity granularity;
+        final LocalDateTime from;
+        final LocalDateTime to;
+
+        Segment(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+            this.granularity = granularity;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.Hit;
+import ru.practicum.model.UriTotal;
+import ru.practicum.sql.HitStatements;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * All-time counters per app and uri. uri_visitors remembers which visitors have already been
+ * counted for a uri, so unique_hits only grows by visitors that are new to it.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UriTotalsRepository {
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Adds the hits to the counters of their uris. The visitors that are new to a uri are returned
+     * by the insert itself, because batch update counts are not reported per row once the driver
+     * rewrites batched inserts. Both tables are touched in key order so that concurrent batches
+     * cannot deadlock.
+     *
+     * @param visitorIds visitor ids of all ips of the hits
+     */
+    public void increment(List<Hit> hits, Map<ByteBuffer, Integer> visitorIds) {
+
+        Set<List<Integer>> visitors = new TreeSet<>(UriTotalsRepository::compareKeys);
+        Map<List<Integer>, UriTotal> totals = new TreeMap<>(UriTotalsRepository::compareKeys);
+        for (Hit hit : hits) {
+            List<Integer> key = List.of(hit.getAppId(), hit.getUriId());
+            visitors.add(List.of(hit.getAppId(), hit.getUriId(), visitorIds.get(ByteBuffer.wrap(hit.getIp()))));
+            totals.merge(key, new UriTotal(hit.getAppId(), hit.getUriId(), 1L, 0L, hit.getTimestamp(), hit.getTimestamp()),
+                    UriTotalsRepository::merge);
+        }
+
+        Map<List<Integer>, Long> newVisitors = new HashMap<>();
+        for (List<List<Integer>> rows : HitStatements.chunks(new ArrayList<>(visitors))) {
+            namedJdbcTemplate.query(HitStatements.addUriVisitors(rows.size()), HitStatements.uriVisitorParams(rows), rs -> {
+                newVisitors.merge(List.of(rs.getInt("app_id"), rs.getInt("uri_id")), 1L, Long::sum);
+            });
+        }
+
+        List<UriTotal> increments = new ArrayList<>(totals.size());
+        for (Map.Entry<List<Integer>, UriTotal> entry : totals.entrySet()) {
+            UriTotal total = entry.getValue();
+            increments.add(new UriTotal(total.getAppId(), total.getUriId(), total.getHits(),
+                    newVisitors.getOrDefault(entry.getKey(), 0L), total.getFirstHit(), total.getLastHit()));
+        }
+        for (List<UriTotal> rows : HitStatements.chunks(increments)) {
+            namedJdbcTemplate.update(HitStatements.incrementUriTotals(rows.size()), HitStatements.uriTotalParams(rows));
+        }
+    }
+
+    /**
+     * Checks with a single aggregate that no hit of the uris lies outside of the range, before any
+     * total is read.
+     *
+     * @param uriIds uris to check, null for all uris
+     */
+    public boolean coversRange(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = "SELECT MIN(first_hit) AS first_hit, MAX(last_hit) AS last_hit FROM uri_totals";
+        if (uriIds != null) {
+            sql += " WHERE " + HitStatsRepository.URI_FILTER;
+            params.addValue("uriIds", HitStatsRepository.toArray(uriIds));
+        }
+        return Boolean.TRUE.equals(namedJdbcTemplate.query(sql, params, rs -> {
+            rs.next();
+            Timestamp firstHit = rs.getTimestamp("first_hit");
+            Timestamp lastHit = rs.getTimestamp("last_hit");
+            return firstHit == null
+                    || (start == null || !firstHit.toLocalDateTime().isBefore(start))
+                    && (end == null || !lastHit.toLocalDateTime().isAfter(end));
+        }));
+    }
+
+    /**
+     * @param uriIds uris to read, null for all uris
+     */
+    public List<UriTotal> findTotals(List<Integer> uriIds) {
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = "SELECT app_id, uri_id, hits, unique_hits, first_hit, last_hit FROM uri_totals";
+        if (uriIds != null) {
+            sql += " WHERE " + HitStatsRepository.URI_FILTER;
+            params.addValue("uriIds", HitStatsRepository.toArray(uriIds));
+        }
+        return namedJdbcTemplate.query(sql, params, (rs, rowNum) -> new UriTotal(
+                rs.getInt("app_id"),
+                rs.getInt("uri_id"),
+                rs.getLong("hits"),
+                rs.getLong("unique_hits"),
+                rs.getTimestamp("first_hit").toLocalDateTime(),
+                rs.getTimestamp("last_hit").toLocalDateTime()));
+    }
+
+    private static int compareKeys(List<Integer> a, List<Integer> b) {
+
+        for (int i = 0; i < a.size(); i++) {
+            int result = a.get(i).compareTo(b.get(i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private static UriTotal merge(UriTotal a, UriTotal b) {
+
+        return new UriTotal(a.getAppId(), a.getUriId(), a.getHits() + b.getHits(), 0L,
+                a.getFirstHit().isBefore(b.getFirstHit()) ? a.getFirstHit() : b.getFirstHit(),
+                a.getLastHit().isAfter(b.getLastHit()) ? a.getLastHit() : b.getLastHit());
+    }
+}
@@ -0,0 +1,61 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.sql.HitStatements;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Dense integer ids of visitor ips, the values stored in the hit_bitmaps bitmaps.
+ */
+@Repository
+@RequiredArgsConstructor
+public class VisitorIdRepository {
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Only ips that have no id yet are inserted, so ids stay dense apart from the rare lost race.
+     * New ips are inserted in byte order, so concurrent writers cannot deadlock on them.
+     */
+    public Map<ByteBuffer, Integer> findOrCreate(Collection<ByteBuffer> ips) {
+
+        Map<ByteBuffer, Integer> ids = find(ips);
+        if (ids.size() == ips.size()) {
+            return ids;
+        }
+
+        List<byte[]> inserts = new ArrayList<>();
+        for (ByteBuffer ip : new TreeSet<>(ips)) {
+            if (!ids.containsKey(ip)) {
+                inserts.add(ip.array());
+            }
+        }
+        for (List<byte[]> rows : HitStatements.chunks(inserts)) {
+            namedJdbcTemplate.update(HitStatements.insertVisitorIds(rows.size()), HitStatements.ipParams(rows));
+        }
+
+        ids.putAll(find(ips));
+        return ids;
+    }
+
+    private Map<ByteBuffer, Integer> find(Collection<ByteBuffer> ips) {
+
+        List<byte[]> values = new ArrayList<>(ips.size());
+        for (ByteBuffer ip : ips) {
+            values.add(ip.array());
+        }
+
+        Map<ByteBuffer, Integer> ids = new HashMap<>();
+        for (List<byte[]> chunk : HitStatements.chunks(values)) {
+            namedJdbcTemplate.query(HitStatements.FIND_VISITOR_IDS, new MapSqlParameterSource("ips", chunk), rs -> {
+                ids.put(ByteBuffer.wrap(rs.getBytes("ip")), rs.getInt("id"));
+            });
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.service;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.model.Hit;
+import ru.practicum.model.HitCount;
+import ru.practicum.model.HitRollup;
+import ru.practicum.repository.HitBitmapRepository;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static ru.practicum.model.RollupGranularity.DAY;
+
+/**
+ * Exact unique-ip counts backed by one compressed bitmap of visitor ids per app, uri and day.
+ * Whole days in the requested range are answered by OR-ing stored bitmaps, the partial days
+ * at the edges are added from raw hits.
+ * <p>
+ * The visitor ids of a written batch are collected per key first, so every stored bitmap is read
+ * and rewritten at most once per buffer flush or log replay batch, not once per hit.
+ */
+@Service
+public class HitBitmapService {
+
+    private final HitBitmapRepository hitBitmapRepository;
+    private final boolean enabled;
+
+    public HitBitmapService(HitBitmapRepository hitBitmapRepository,
+                            @Value("${stats.bitmaps.enabled:false}") boolean enabled) {
+        this.hitBitmapRepository = hitBitmapRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void load() {
+
+        if (enabled) {
+            hitBitmapRepository.backfill();
+        }
+    }
+
+    /**
+     * @param hits a whole flush or replay batch
+     * @param visitorIds visitor ids of all ips of the hits
+     */
+    public void add(List<Hit> hits, Map<ByteBuffer, Integer> visitorIds) {
+
+        if (!enabled) {
+            return;
+        }
+
+        Map<HitRollup, RoaringBitmap> visitors = new TreeMap<>(HitRollup.LOCK_ORDER);
+        for (Hit hit : hits) {
+            HitRollup key = new HitRollup(DAY, DAY.floor(hit.getTimestamp()), hit.getAppId(), hit.getUriId());
+            visitors.computeIfAbsent(key, k -> new RoaringBitmap()).add(visitorIds.get(ByteBuffer.wrap(hit.getIp())));
+        }
+        hitBitmapRepository.add(visitors);
+    }
+
+    /**
+     * @param uriIds uris to count, null for all uris
+     */
+    public List<HitCount> getUniqueStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+
+        LocalDateTime to = end.plusSeconds(1);
+        LocalDateTime daysFrom = DAY.ceil(start);
+        LocalDateTime daysTo = DAY.floor(to);
+        Map<List<Integer>, RoaringBitmap> bitmaps = new HashMap<>();
+
+        if (daysFrom.isBefore(daysTo)) {
+            hitBitmapRepository.mergeBitmaps(bitmaps, daysFrom, daysTo, uriIds);
+            if (start.isBefore(daysFrom)) {
+                hitBitmapRepository.mergeRawVisitors(bitmaps, start, daysFrom, uriIds);
+            }
+            if (daysTo.isBefore(to)) {
+                hitBitmapRepository.mergeRawVisitors(bitmaps, daysTo, to, uriIds);
+            }
+        } else {
+            hitBitmapRepository.mergeRawVisitors(bitmaps, start, to, uriIds);
+        }
+
+        List<HitCount> result = new ArrayList<>(bitmaps.size());
+        for (Map.Entry<List<Integer>, RoaringBitmap> bitmap : bitmaps.entrySet()) {
+            result.add(new HitCount(bitmap.getKey().get(0), bitmap.getKey().get(1), bitmap.getValue().getLongCardinality()));
+        }
+        result.sort(Comparator.comparing(HitCount::getHits).reversed());
+        return result;
+    }
+}
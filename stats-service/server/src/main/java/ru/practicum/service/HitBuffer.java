@@ -0,0 +1,160 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.Hit;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Write-behind buffer for {@link IngestMode#BUFFER}: hits are acknowledged as soon as they are queued
+ * and a scheduled flusher drains the queue into the database in batches. Hits that do not fit
+ * into the queue are dropped and counted.
+ * <p>
+ * A batch the database rejects is kept and retried on the next flush, the queue is not drained
+ * meanwhile. After {@code flush-max-attempts} failures the batch is written hit by hit: when some
+ * of them succeed the database is reachable and the remaining hits are rejected for good, otherwise
+ * the whole batch is kept for another round.
+ */
+@Slf4j
+@Component
+public class HitBuffer {
+
+    private final HitWriter hitWriter;
+    private final boolean enabled;
+    private final int flushSize;
+    private final int maxAttempts;
+    private final BlockingQueue<Hit> queue;
+    private final Counter dropped;
+    private final Counter flushed;
+    private final Counter retried;
+    private final Counter failed;
+
+    private List<Hit> pending = List.of();
+    private int attempts;
+    private volatile LocalDateTime drainedAt = LocalDateTime.now();
+
+    public HitBuffer(HitWriter hitWriter,
+                     MeterRegistry meterRegistry,
+                     @Value("${stats.ingest.mode:SYNC}") IngestMode mode,
+                     @Value("${stats.ingest.buffer-capacity:100000}") int capacity,
+                     @Value("${stats.ingest.flush-size:1000}") int flushSize,
+                     @Value("${stats.ingest.flush-max-attempts:5}") int maxAttempts) {
+        this.hitWriter = hitWriter;
+        this.enabled = mode == IngestMode.BUFFER;
+        this.flushSize = flushSize;
+        this.maxAttempts = maxAttempts;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.dropped = meterRegistry.counter("stats.ingest.buffer.dropped");
+        this.flushed = meterRegistry.counter("stats.ingest.buffer.flushed");
+        this.retried = meterRegistry.counter("stats.ingest.buffer.retried");
+        this.failed = meterRegistry.counter("stats.ingest.buffer.failed");
+        meterRegistry.gaugeCollectionSize("stats.ingest.buffer.depth", Tags.empty(), queue);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start of the last flush that emptied the buffer: every hit offered before it has been written.
+     */
+    public LocalDateTime getWatermark() {
+        return drainedAt;
+    }
+
+    public void offer(List<Hit> hits) {
+
+        for (Hit hit : hits) {
+            if (!queue.offer(hit)) {
+                dropped.increment();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.ingest.flush-interval-ms:200}")
+    public synchronized void flush() {
+
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime started = LocalDateTime.now();
+        if (!pending.isEmpty() && !write(pending)) {
+            return;
+        }
+
+        List<Hit> batch = new ArrayList<>(flushSize);
+        while (queue.drainTo(batch, flushSize) > 0) {
+            if (!write(batch)) {
+                return;
+            }
+            batch = new ArrayList<>(flushSize);
+        }
+        drainedAt = started;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        log.info("Flushing {} buffered hits before shutdown", queue.size() + pending.size());
+        flush();
+        if (!pending.isEmpty() || !queue.isEmpty()) {
+            log.error("Lost {} buffered hits on shutdown, the database is not reachable", queue.size() + pending.size());
+        }
+    }
+
+    /**
+     * @return false when the batch has been kept for the next flush
+     */
+    private boolean write(List<Hit> batch) {
+
+        try {
+            hitWriter.write(batch);
+            flushed.increment(batch.size());
+            pending = List.of();
+            attempts = 0;
+            return true;
+        } catch (RuntimeException e) {
+            attempts++;
+            retried.increment(batch.size());
+            log.warn("Failed to flush {} hits, attempt {}: {}", batch.size(), attempts, e.getMessage());
+        }
+
+        if (attempts < maxAttempts) {
+            pending = batch;
+            return false;
+        }
+
+        attempts = 0;
+        List<Hit> rejected = new ArrayList<>();
+        for (Hit hit : batch) {
+            try {
+                hitWriter.write(List.of(hit));
+                flushed.increment();
+            } catch (RuntimeException e) {
+                rejected.add(hit);
+            }
+        }
+        if (rejected.size() == batch.size()) {
+            pending = batch;
+            return false;
+        }
+        if (!rejected.isEmpty()) {
+            log.error("Dropped {} hits rejected by the database", rejected.size());
+            failed.increment(rejected.size());
+        }
+        pending = List.of();
+        return true;
+    }
+}
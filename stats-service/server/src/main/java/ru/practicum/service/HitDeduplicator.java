@@ -0,0 +1,90 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.Hit;
+import ru.practicum.sketch.BloomFilter;
+import ru.practicum.sketch.Hashing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Optional suppression of repeated (app, uri, ip) hits. Keys are remembered in two rotating Bloom
+ * filters, the current one and the one of the previous window, so a repeat is dropped for at least
+ * {@code window-ms} and at most twice that after the first hit. False positives drop a small share
+ * of genuine first hits, bounded by {@code false-positive-probability}.
+ */
+@Component
+public class HitDeduplicator {
+
+    private final boolean enabled;
+    private final long windowMs;
+    private final Counter suppressed;
+    private BloomFilter current;
+    private BloomFilter previous;
+    private long currentWindow;
+
+    public HitDeduplicator(MeterRegistry meterRegistry,
+                           @Value("${stats.ingest.dedup.enabled:false}") boolean enabled,
+                           @Value("${stats.ingest.dedup.window-ms:30000}") long windowMs,
+                           @Value("${stats.ingest.dedup.expected-insertions:1000000}") long expectedInsertions,
+                           @Value("${stats.ingest.dedup.false-positive-probability:0.001}") double falsePositiveProbability) {
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.suppressed = meterRegistry.counter("stats.ingest.dedup.suppressed");
+        if (enabled) {
+            this.current = new BloomFilter(expectedInsertions, falsePositiveProbability);
+            this.previous = new BloomFilter(expectedInsertions, falsePositiveProbability);
+        }
+    }
+
+    /**
+     * @return the hits that were not seen within the window, in their original order
+     */
+    public List<Hit> filter(List<Hit> hits) {
+        return filter(hits, System.currentTimeMillis());
+    }
+
+    List<Hit> filter(List<Hit> hits, long now) {
+
+        if (!enabled) {
+            return hits;
+        }
+
+        List<Hit> result = new ArrayList<>(hits.size());
+        synchronized (this) {
+            rotate(now / windowMs);
+            for (Hit hit : hits) {
+                long hash = Hashing.mix(Hashing.hash64(hit.getIp()) ^ ((long) hit.getAppId() << 32 | hit.getUriId()));
+                // a repeat of the previous window is not carried into the current one, otherwise
+                // a client retrying once per window would stay suppressed forever
+                boolean seen = previous.mightContain(hash) || current.put(hash);
+                if (!seen) {
+                    result.add(hit);
+                }
+            }
+        }
+        suppressed.increment(hits.size() - result.size());
+        return result;
+    }
+
+    private void rotate(long window) {
+
+        if (window == currentWindow) {
+            return;
+        }
+
+        BloomFilter oldest = previous;
+        previous = current;
+        current = oldest;
+        current.clear();
+        if (window - currentWindow > 1) {
+            // nothing arrived during the last window, so the previous filter is stale as well
+            previous.clear();
+        }
+        currentWindow = window;
+    }
+}
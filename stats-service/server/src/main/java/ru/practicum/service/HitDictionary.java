@@ -0,0 +1,140 @@
+package ru.practicum.service;
+
+import org.springframework.stereotype.Component;
+import ru.practicum.UriPatterns;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.model.HitCount;
+import ru.practicum.repository.DictionaryRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory, bidirectional cache of the apps and uris lookup tables. hits and all derived
+ * tables store only the integer keys; strings are resolved here on the way in and out.
+ */
+@Component
+public class HitDictionary {
+
+    private final DictionaryRepository dictionaryRepository;
+    private final Entries apps = new Entries(DictionaryRepository.APPS);
+    private final Entries uris = new Entries(DictionaryRepository.URIS);
+
+    public HitDictionary(DictionaryRepository dictionaryRepository) {
+        this.dictionaryRepository = dictionaryRepository;
+    }
+
+    @PostConstruct
+    public void load() {
+        dictionaryRepository.findAll(DictionaryRepository.APPS, apps::put);
+        dictionaryRepository.findAll(DictionaryRepository.URIS, uris::put);
+    }
+
+    public Integer appId(String app) {
+        return apps.findOrCreateId(app);
+    }
+
+    public Integer uriId(String uri) {
+        return uris.findOrCreateId(uri);
+    }
+
+    public String appName(Integer appId) {
+        return apps.findName(appId);
+    }
+
+    public String uriName(Integer uriId) {
+        return uris.findName(uriId);
+    }
+
+    /**
+     * @param names uris or {@link UriPatterns} prefixes
+     * @return ids of the uris that have ever been hit, unknown uris are skipped
+     */
+    public List<Integer> findUriIds(List<String> names) {
+
+        Set<Integer> ids = new LinkedHashSet<>(names.size());
+        for (String name : names) {
+            if (UriPatterns.isPrefix(name)) {
+                ids.addAll(findUriIdsByPrefix(UriPatterns.prefix(name)));
+            } else {
+                Integer id = uris.findId(name);
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    public List<Integer> findUriIdsByPrefix(String prefix) {
+        return dictionaryRepository.findIdsByPrefix(DictionaryRepository.URIS, prefix);
+    }
+
+    public StatsDto decode(HitCount count) {
+        return new StatsDto(appName(count.getAppId()), uriName(count.getUriId()), count.getHits());
+    }
+
+    public List<StatsDto> decode(List<HitCount> counts) {
+
+        List<StatsDto> result = new ArrayList<>(counts.size());
+        for (HitCount count : counts) {
+            result.add(decode(count));
+        }
+        return result;
+    }
+
+    private final class Entries {
+
+        private final String table;
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+        Entries(String table) {
+            this.table = table;
+        }
+
+        void put(Integer id, String name) {
+            ids.put(name, id);
+            names.put(id, name);
+        }
+
+        Integer findOrCreateId(String name) {
+
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = dictionaryRepository.findOrCreate(table, name);
+                put(id, name);
+            }
+            return id;
+        }
+
+        Integer findId(String name) {
+
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = dictionaryRepository.findId(table, name);
+                if (id != null) {
+                    put(id, name);
+                }
+            }
+            return id;
+        }
+
+        String findName(Integer id) {
+
+            String name = names.get(id);
+            if (name == null) {
+                name = dictionaryRepository.findName(table, id);
+                if (name != null) {
+                    put(id, name);
+                }
+            }
+            return name;
+        }
+    }
+}
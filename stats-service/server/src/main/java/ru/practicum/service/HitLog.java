@@ -0,0 +1,378 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.hitlog.HitLogSegment;
+import ru.practicum.model.Hit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only hit log for {@link IngestMode#LOG}. Hits are appended to memory-mapped segment files
+ * and acknowledged once a sync thread has forced them to disk; syncs are shared by all requests
+ * that arrive within {@code fsync-interval-ms}. A scheduled replayer copies synced records into
+ * the database through {@link HitWriter} and deletes consumed segments. The replay position is
+ * checkpointed after each batch, so after a crash records are delivered at least once.
+ * <p>
+ * Positions in the log are {@code segment index << 32 | slot}.
+ */
+@Slf4j
+@Component
+public class HitLog {
+
+    private static final String CHECKPOINT = "checkpoint";
+
+    private final HitWriter hitWriter;
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentSize;
+    private final long fsyncIntervalMs;
+    private final int replayBatchSize;
+    private final Counter appended;
+    private final Counter replayed;
+    private final Counter failed;
+
+    private final NavigableMap<Long, HitLogSegment> segments = new TreeMap<>();
+    private HitLogSegment active;
+    private int writeSlot;
+    private long written;
+
+    private final Object syncLock = new Object();
+    private final Object replayLock = new Object();
+    private boolean closed;
+    private long synced;
+    private volatile boolean running;
+    private Thread syncThread;
+
+    private long checkpoint;
+    // no range counts as closed before the first complete replay
+    private volatile LocalDateTime replayedAt = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    public HitLog(HitWriter hitWriter,
+                  MeterRegistry meterRegistry,
+                  @Value("${stats.ingest.mode:SYNC}") IngestMode mode,
+                  @Value("${stats.ingest.log.dir:./hit-log}") String dir,
+                  @Value("${stats.ingest.log.segment-size:67108864}") int segmentSize,
+                  @Value("${stats.ingest.log.fsync-interval-ms:20}") long fsyncIntervalMs,
+                  @Value("${stats.ingest.log.replay-batch-size:1000}") int replayBatchSize) {
+        this.hitWriter = hitWriter;
+        this.enabled = mode == IngestMode.LOG;
+        this.dir = Paths.get(dir);
+        this.segmentSize = segmentSize;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.replayBatchSize = replayBatchSize;
+        this.appended = meterRegistry.counter("stats.ingest.log.appended");
+        this.replayed = meterRegistry.counter("stats.ingest.log.replayed");
+        this.failed = meterRegistry.counter("stats.ingest.log.failed");
+        meterRegistry.gaugeMapSize("stats.ingest.log.segments", Tags.empty(), segments);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start of the last replay that reached the end of the synced log: every hit acknowledged
+     * before it has been written.
+     */
+    public LocalDateTime getWatermark() {
+        return replayedAt;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+
+        if (!enabled) {
+            return;
+        }
+
+        Files.createDirectories(dir);
+        checkpoint = readCheckpoint();
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(HitLogSegment::isSegment).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            if (HitLogSegment.index(file) < segmentIndex(checkpoint)) {
+                Files.delete(file);
+            } else {
+                HitLogSegment segment = HitLogSegment.open(file);
+                segments.put(segment.getIndex(), segment);
+            }
+        }
+
+        if (segments.isEmpty()) {
+            active = HitLogSegment.create(dir, segmentIndex(checkpoint) + 1, segmentSize);
+            segments.put(active.getIndex(), active);
+            writeSlot = 0;
+            saveCheckpoint(position(active.getIndex(), 0));
+        } else {
+            active = segments.lastEntry().getValue();
+            writeSlot = active.findEnd();
+            if (segments.firstKey() > segmentIndex(checkpoint)) {
+                // the consumed segment was deleted before its checkpoint was saved
+                saveCheckpoint(position(segments.firstKey(), 0));
+            }
+        }
+        written = position(active.getIndex(), writeSlot);
+        synced = written;
+        log.info("Opened hit log in {}, {} segments, replaying from {}", dir, segments.size(), checkpoint);
+
+        running = true;
+        syncThread = new Thread(this::syncLoop, "hit-log-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    /**
+     * Returns once the hits are on disk.
+     *
+     * @throws IllegalStateException if the log is stopped before the hits are synced
+     */
+    public void append(List<Hit> hits) {
+
+        long target;
+        synchronized (this) {
+            if (!running) {
+                throw new IllegalStateException("The hit log is stopped");
+            }
+            for (Hit hit : hits) {
+                if (writeSlot == active.getCapacity()) {
+                    roll();
+                }
+                active.write(writeSlot++, hit);
+            }
+            written = position(active.getIndex(), writeSlot);
+            target = written;
+        }
+        appended.increment(hits.size());
+
+        synchronized (syncLock) {
+            syncLock.notifyAll();
+            while (synced < target) {
+                if (!running) {
+                    throw new IllegalStateException("The hit log stopped before the hits were synced");
+                }
+                try {
+                    syncLock.wait(fsyncIntervalMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the hit log sync", e);
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.ingest.log.replay-interval-ms:500}")
+    public void replay() {
+
+        if (!enabled) {
+            return;
+        }
+        // segments are unmapped on close, they must not be read afterwards
+        synchronized (replayLock) {
+            if (!closed) {
+                replayUntilSynced();
+            }
+        }
+    }
+
+    private void replayUntilSynced() {
+
+        LocalDateTime started = LocalDateTime.now();
+        long limit;
+        synchronized (syncLock) {
+            limit = synced;
+        }
+
+        while (checkpoint < limit) {
+            long index = segmentIndex(checkpoint);
+            int slot = slot(checkpoint);
+            HitLogSegment segment;
+            synchronized (this) {
+                segment = segments.get(index);
+            }
+
+            int end = index == segmentIndex(limit) ? slot(limit) : segment.getCapacity();
+            if (slot == end) {
+                // only reached for a segment that has been synced completely and is no longer written to
+                synchronized (this) {
+                    segments.remove(index);
+                }
+                try {
+                    segment.delete();
+                } catch (IOException e) {
+                    log.warn("Failed to delete hit log segment {}: {}", index, e.getMessage());
+                }
+                saveCheckpoint(position(index + 1, 0));
+                continue;
+            }
+
+            int to = Math.min(end, slot + replayBatchSize);
+            List<Hit> batch = new ArrayList<>(to - slot);
+            for (int i = slot; i < to; i++) {
+                Hit hit = segment.read(i);
+                if (hit != null) {
+                    batch.add(hit);
+                }
+            }
+
+            try {
+                hitWriter.write(batch);
+            } catch (RuntimeException e) {
+                log.error("Failed to replay {} hits from the hit log: {}", batch.size(), e.getMessage());
+                failed.increment(batch.size());
+                return;
+            }
+            replayed.increment(batch.size());
+            saveCheckpoint(position(index, to));
+        }
+        replayedAt = started;
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (this) {
+            running = false;
+        }
+        syncThread.join();
+        synchronized (replayLock) {
+            closed = true;
+            synchronized (this) {
+                for (HitLogSegment segment : segments.values()) {
+                    segment.force();
+                    segment.close();
+                }
+                synchronized (syncLock) {
+                    synced = written;
+                    syncLock.notifyAll();
+                }
+            }
+        }
+        log.info("Closed hit log, unreplayed hits are replayed after the next start");
+    }
+
+    private void syncLoop() {
+
+        try {
+            syncUntilStopped();
+        } catch (RuntimeException e) {
+            log.error("Hit log sync failed, no more hits are accepted: {}", e.getMessage());
+            synchronized (this) {
+                running = false;
+            }
+            synchronized (syncLock) {
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    private void syncUntilStopped() {
+
+        while (running) {
+            HitLogSegment segment;
+            long target;
+            synchronized (this) {
+                segment = active;
+                target = written;
+            }
+
+            if (target > synced) {
+                segment.force();
+                synchronized (syncLock) {
+                    synced = target;
+                    syncLock.notifyAll();
+                }
+            }
+
+            synchronized (syncLock) {
+                try {
+                    syncLock.wait(fsyncIntervalMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void roll() {
+
+        try {
+            active.force();
+            active = HitLogSegment.create(dir, active.getIndex() + 1, segmentSize);
+            segments.put(active.getIndex(), active);
+            writeSlot = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+
+        Path path = dir.resolve(CHECKPOINT);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(path)).getLong();
+    }
+
+    private void saveCheckpoint(long position) {
+
+        Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, position));
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        checkpoint = position;
+    }
+
+    private static long position(long segmentIndex, int slot) {
+        return segmentIndex << 32 | slot;
+    }
+
+    private static long segmentIndex(long position) {
+        return position >>> 32;
+    }
+
+    private static int slot(long position) {
+        return (int) position;
+    }
+}
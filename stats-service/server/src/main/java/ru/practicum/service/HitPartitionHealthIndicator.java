@@ -0,0 +1,30 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports DOWN while the last partition maintenance run failed, since new hits then pile up in
+ * hits_default or retention stops dropping old months.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitPartitionHealthIndicator implements HealthIndicator {
+
+    private final HitPartitionService hitPartitionService;
+
+    @Override
+    public Health health() {
+
+        String failure = hitPartitionService.getLastFailure();
+        if (failure == null) {
+            return Health.up().build();
+        }
+        return Health.down()
+                .withDetail("error", failure)
+                .withDetail("at", String.valueOf(hitPartitionService.getLastFailureAt()))
+                .build();
+    }
+}
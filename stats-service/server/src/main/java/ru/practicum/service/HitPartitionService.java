@@ -0,0 +1,153 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.repository.HitPartitionRepository;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Keeps monthly partitions of hits created ahead of time and applies the retention policy.
+ * Hits with a client timestamp outside of every partition land in hits_default; their months get
+ * a partition on the next run, which moves the rows out of the default partition, so they are
+ * covered by retention like any other month.
+ * With a retention of N months every partition that ended more than N months ago is
+ * dropped, or detached and left as a standalone table when the action is DETACH.
+ * A partition is first detached, which only changes the catalog. Its hits are then subtracted
+ * from the all-time uri totals, and the rollups, sketches and bitmaps of its month are deleted,
+ * in one transaction that reads the detached table and does not lock hits, so every source of
+ * precomputed counts keeps matching the stored hits. Tables detached by an interrupted run are
+ * finished on the next one.
+ * <p>
+ * Failed steps are counted in {@code stats.partitions.failures} and reported by
+ * {@link HitPartitionHealthIndicator} until a run completes without errors.
+ */
+@Slf4j
+@Service
+public class HitPartitionService {
+
+    private final HitPartitionRepository hitPartitionRepository;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final RetentionAction retentionAction;
+    private final Counter failures;
+
+    private volatile String lastFailure;
+    private volatile LocalDateTime lastFailureAt;
+
+    public HitPartitionService(HitPartitionRepository hitPartitionRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${stats.partitions.months-ahead:3}") int monthsAhead,
+                               @Value("${stats.partitions.retention-months:0}") int retentionMonths,
+                               @Value("${stats.partitions.retention-action:DROP}") RetentionAction retentionAction) {
+        this.hitPartitionRepository = hitPartitionRepository;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.retentionAction = retentionAction;
+        this.failures = meterRegistry.counter("stats.partitions.failures");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${stats.partitions.maintenance-cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+
+        String failure = null;
+        try {
+            YearMonth current = YearMonth.now();
+            List<YearMonth> existing = hitPartitionRepository.findPartitions();
+
+            TreeSet<YearMonth> missing = new TreeSet<>(hitPartitionRepository.findDefaultMonths());
+            for (int i = 0; i <= monthsAhead; i++) {
+                missing.add(current.plusMonths(i));
+            }
+            missing.removeAll(existing);
+
+            for (YearMonth month : missing) {
+                try {
+                    if (hitPartitionRepository.createPartition(month)) {
+                        log.info("Created hits partition for {}", month);
+                    }
+                } catch (DataAccessException e) {
+                    log.error("Could not create hits partition for {}: {}", month, e.getMessage());
+                    failures.increment();
+                    failure = String.format("Could not create hits partition for %s: %s", month, e.getMessage());
+                }
+            }
+
+            if (retentionMonths > 0) {
+                failure = applyRetention(current.minusMonths(retentionMonths), failure);
+            }
+        } catch (DataAccessException e) {
+            log.error("Hits partition maintenance failed: {}", e.getMessage());
+            failures.increment();
+            failure = "Hits partition maintenance failed: " + e.getMessage();
+        }
+
+        if (failure != null) {
+            lastFailure = failure;
+            lastFailureAt = LocalDateTime.now();
+        } else {
+            lastFailure = null;
+            lastFailureAt = null;
+        }
+    }
+
+    /**
+     * Message of the failed step of the last run, or null when it completed without errors.
+     */
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    public LocalDateTime getLastFailureAt() {
+        return lastFailureAt;
+    }
+
+    private String applyRetention(YearMonth oldestKept, String failure) {
+
+        for (YearMonth month : hitPartitionRepository.findPartitions()) {
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+            try {
+                hitPartitionRepository.detachPartition(month);
+            } catch (DataAccessException e) {
+                log.error("Could not detach hits partition for {}: {}", month, e.getMessage());
+                failures.increment();
+                failure = String.format("Could not detach hits partition for %s: %s", month, e.getMessage());
+            }
+        }
+
+        boolean drop = retentionAction == RetentionAction.DROP;
+        for (YearMonth month : hitPartitionRepository.findDetached()) {
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+            try {
+                if (hitPartitionRepository.removeDetached(month, drop)) {
+                    log.info(drop ? "Dropped hits partition for {}" : "Detached hits partition for {}", month);
+                }
+            } catch (DataAccessException e) {
+                log.error("Could not apply retention to hits partition for {}: {}", month, e.getMessage());
+                failures.increment();
+                failure = String.format("Could not apply retention to hits partition for %s: %s", month, e.getMessage());
+            }
+        }
+        return failure;
+    }
+
+    public enum RetentionAction {
+        DETACH,
+        DROP
+    }
+}
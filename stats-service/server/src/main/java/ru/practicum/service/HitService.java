@@ -1,14 +1,36 @@
 package ru.practicum.service;
 
+import ru.practicum.dto.HistogramDto;
 import ru.practicum.dto.HitDto;
+import ru.practicum.dto.IpStatsDto;
 import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.WindowDto;
+import ru.practicum.dto.WindowStatsDto;
+import ru.practicum.model.RollupGranularity;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface HitService {
 
     void createHit(HitDto hitDto);
 
-    List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique);
+    void createHits(List<HitDto> hitDtos);
+
+    List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique, Boolean approximate);
+
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique, Boolean approximate,
+                     Consumer<StatsDto> consumer);
+
+    List<StatsDto> getTopStats(LocalDateTime start, LocalDateTime end, String prefix, Boolean unique, int limit);
+
+    List<HistogramDto> getHistogram(LocalDateTime start, LocalDateTime end, List<String> uris, RollupGranularity granularity,
+                                    Boolean unique);
+
+    List<WindowStatsDto> getWindowStats(List<WindowDto> windows, List<String> uris, Boolean unique);
+
+    List<StatsDto> getTrendingUris(int limit);
+
+    List<IpStatsDto> getTrendingIps(int limit);
 }
\ No newline at end of file
@@ -1,17 +1,31 @@
 package ru.practicum.service;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.HitMapper;
+import ru.practicum.dto.HistogramDto;
 import ru.practicum.dto.HitDto;
+import ru.practicum.dto.IpStatsDto;
 import ru.practicum.dto.StatsDto;
+import ru.practicum.dto.WindowDto;
+import ru.practicum.dto.WindowStatsDto;
 import ru.practicum.exception.ValidationException;
+import ru.practicum.model.Hit;
+import ru.practicum.model.HitBucketCount;
+import ru.practicum.model.HitCount;
+import ru.practicum.model.HitRollup;
+import ru.practicum.model.RollupGranularity;
 import ru.practicum.repository.HitRepository;
+import ru.practicum.repository.HitStatsRepository;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
@@ -20,24 +34,294 @@ import java.util.List;
 public class HitServiceImpl implements HitService {
 
     private final HitRepository hitRepository;
+    private final HitStatsRepository hitStatsRepository;
+    private final HitSketchService hitSketchService;
+    private final HitBitmapService hitBitmapService;
+    private final UriTotalsService uriTotalsService;
+    private final HitDictionary hitDictionary;
+    private final HitWriter hitWriter;
+    private final HitBuffer hitBuffer;
+    private final HitLog hitLog;
+    private final HitTrends hitTrends;
+    private final HitDeduplicator hitDeduplicator;
+    private final StatsCache statsCache;
+    private final StatsMetrics statsMetrics;
 
-    @Transactional
+    @Value("${stats.query.use-rollups:true}")
+    private boolean useRollups;
+
+    @Value("${stats.histogram.max-buckets:10000}")
+    private long maxHistogramBuckets;
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @Override
     public void createHit(HitDto hitDto) {
 
-        hitRepository.save(HitMapper.returnHit(hitDto));
+        Timer.Sample sample = statsMetrics.start();
+        ingest(List.of(returnHit(hitDto)));
+        statsMetrics.recordIngest(sample, "hit", 1);
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Override
+    public void createHits(List<HitDto> hitDtos) {
+
+        Timer.Sample sample = statsMetrics.start();
+        List<Hit> hits = new ArrayList<>(hitDtos.size());
+        for (HitDto hitDto : hitDtos) {
+            hits.add(returnHit(hitDto));
+        }
+        ingest(hits);
+        statsMetrics.recordIngest(sample, "hits", hits.size());
+    }
+
+    @Override
+    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique, Boolean approximate) {
+
+        validateRange(start, end);
+        Timer.Sample sample = statsMetrics.start();
+
+        List<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = hitDictionary.findUriIds(uris);
+            if (uriIds.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        List<Integer> ids = uriIds;
+        List<HitCount> counts = statsCache.isEnabled() && start != null && end != null
+                ? statsCache.get(start, end, ids, unique, approximate, ingestWatermark(),
+                (from, to) -> findCounts(from, to, ids, unique, approximate))
+                : findCounts(start, end, uriIds, unique, approximate);
+        statsMetrics.recordQuery(sample, "stats", unique, uriIds != null, counts.size());
+        return hitDictionary.decode(counts);
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique, Boolean approximate,
+                            Consumer<StatsDto> consumer) {
+
+        validateRange(start, end);
+        Timer.Sample sample = statsMetrics.start();
+
+        List<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = hitDictionary.findUriIds(uris);
+            if (uriIds.isEmpty()) {
+                return;
+            }
+        }
+
+        int[] rows = new int[1];
+        Consumer<HitCount> decoder = count -> {
+            rows[0]++;
+            consumer.accept(hitDictionary.decode(count));
+        };
+        // never served from the cache, which would collect the whole result in memory first
+        streamCounts(start, end, uriIds, unique, approximate, decoder);
+        statsMetrics.recordQuery(sample, "stream", unique, uriIds != null, rows[0]);
+    }
+
+    /**
+     * Reads the unsorted aggregate and keeps only the best {@code limit} rows in a min-heap,
+     * so neither the database nor the service sorts the full result.
+     */
+    @Override
+    public List<StatsDto> getTopStats(LocalDateTime start, LocalDateTime end, String prefix, Boolean unique, int limit) {
+
+        validateRange(start, end);
+        Timer.Sample sample = statsMetrics.start();
+
+        List<Integer> uriIds = null;
+        if (prefix != null && !prefix.isEmpty()) {
+            uriIds = hitDictionary.findUriIdsByPrefix(prefix);
+            if (uriIds.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        PriorityQueue<HitCount> top = new PriorityQueue<>(limit + 1, Comparator.comparing(HitCount::getHits));
+        Consumer<HitCount> collector = count -> {
+            if (top.size() < limit) {
+                top.add(count);
+            } else if (count.getHits() > top.peek().getHits()) {
+                top.poll();
+                top.add(count);
+            }
+        };
+
+        if (!unique && useRollups) {
+            log.info("Get top stats from rollups");
+            hitStatsRepository.streamStats(start, end, uriIds, false, collector);
+        } else {
+            log.info("Get top stats from hits");
+            hitStatsRepository.streamRawStats(start, end, uriIds, unique, false, collector);
+        }
+
+        List<HitCount> counts = new ArrayList<>(top);
+        counts.sort(Comparator.comparing(HitCount::getHits).reversed());
+        statsMetrics.recordQuery(sample, "top", unique, uriIds != null, counts.size());
+        return hitDictionary.decode(counts);
+    }
+
+    /**
+     * Counts per whole bucket: the first bucket is the one containing {@code start}, the last one
+     * the one containing {@code end}. Hits come from hit_rollups, unique hits from hits. Uris without
+     * any hit in the range are left out, since their app is unknown.
+     */
+    @Override
+    public List<HistogramDto> getHistogram(LocalDateTime start, LocalDateTime end, List<String> uris, RollupGranularity granularity,
+                                           Boolean unique) {
+
+        validateRange(start, end);
+        Timer.Sample sample = statsMetrics.start();
+
+        LocalDateTime from = granularity.floor(start);
+        LocalDateTime to = granularity.ceil(end.plusSeconds(1));
+        long buckets = granularity.between(from, to);
+
+        List<Integer> uriIds = hitDictionary.findUriIds(uris);
+        if (uriIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (buckets * uriIds.size() > maxHistogramBuckets) {
+            throw new ValidationException("Histogram must not have more than " + maxHistogramBuckets + " buckets, requested "
+                    + buckets + " for each of " + uriIds.size() + " uris");
+        }
+
+        log.info("Get histogram by {}", granularity);
+        Map<HitRollup, Long> hits = new HashMap<>();
+        Set<List<Integer>> series = new LinkedHashSet<>();
+        for (HitBucketCount count : hitStatsRepository.findHistogram(granularity, from, to, uriIds)) {
+            hits.put(new HitRollup(granularity, count.getBucketStart(), count.getAppId(), count.getUriId()), count.getHits());
+            series.add(List.of(count.getAppId(), count.getUriId()));
+        }
+
+        Map<HitRollup, Long> uniqueHits = new HashMap<>();
+        if (unique) {
+            for (HitBucketCount count : hitStatsRepository.findUniqueHistogram(granularity, from, to, uriIds)) {
+                uniqueHits.put(new HitRollup(granularity, count.getBucketStart(), count.getAppId(), count.getUriId()), count.getHits());
+            }
+        }
+
+        // every bucket of the range for each app and uri with hits in it, empty buckets included
+        List<HistogramDto> result = new ArrayList<>();
+        for (List<Integer> key : series) {
+            String app = hitDictionary.appName(key.get(0));
+            String uri = hitDictionary.uriName(key.get(1));
+            for (LocalDateTime bucketStart = from; bucketStart.isBefore(to); bucketStart = granularity.next(bucketStart)) {
+                HitRollup bucket = new HitRollup(granularity, bucketStart, key.get(0), key.get(1));
+                result.add(new HistogramDto(app, uri, bucketStart, hits.getOrDefault(bucket, 0L),
+                        unique ? uniqueHits.getOrDefault(bucket, 0L) : null));
+            }
+        }
+
+        statsMetrics.recordQuery(sample, "histogram", unique, true, result.size());
+        return result;
+    }
+
+    /**
+     * Counts the same uris over several windows. Plain counts are summed from rollups window by window,
+     * unique counts are computed for all windows in one pass over hits.
+     */
+    @Override
+    public List<WindowStatsDto> getWindowStats(List<WindowDto> windows, List<String> uris, Boolean unique) {
+
+        Set<String> names = new HashSet<>();
+        for (WindowDto window : windows) {
+            validateRange(window.getStart(), window.getEnd());
+            if (!names.add(window.getName())) {
+                throw new ValidationException("Duplicate window name " + window.getName());
+            }
+        }
+        Timer.Sample sample = statsMetrics.start();
+
+        List<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = hitDictionary.findUriIds(uris);
+        }
+
+        List<List<HitCount>> counts;
+        if (uriIds != null && uriIds.isEmpty()) {
+            counts = Collections.nCopies(windows.size(), Collections.emptyList());
+        } else if (unique) {
+            log.info("Get unique stats for {} windows in one pass", windows.size());
+            List<LocalDateTime> starts = new ArrayList<>(windows.size());
+            List<LocalDateTime> ends = new ArrayList<>(windows.size());
+            for (WindowDto window : windows) {
+                starts.add(window.getStart());
+                ends.add(window.getEnd());
+            }
+            counts = hitStatsRepository.findUniqueWindowStats(starts, ends, uriIds);
+        } else {
+            log.info("Get stats for {} windows", windows.size());
+            counts = new ArrayList<>(windows.size());
+            List<Integer> ids = uriIds;
+            for (WindowDto window : windows) {
+                counts.add(statsCache.isEnabled()
+                        ? statsCache.get(window.getStart(), window.getEnd(), ids, false, false, ingestWatermark(),
+                        (from, to) -> findCounts(from, to, ids, false, false))
+                        : findCounts(window.getStart(), window.getEnd(), ids, false, false));
+            }
+        }
+
+        List<WindowStatsDto> result = new ArrayList<>(windows.size());
+        int rows = 0;
+        for (int i = 0; i < windows.size(); i++) {
+            result.add(new WindowStatsDto(windows.get(i).getName(), hitDictionary.decode(counts.get(i))));
+            rows += counts.get(i).size();
+        }
+        statsMetrics.recordQuery(sample, "windows", unique, uriIds != null, rows);
+        return result;
     }
 
     @Override
-    public List<StatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+    public List<StatsDto> getTrendingUris(int limit) {
+        return hitTrends.getTrendingUris(limit);
+    }
+
+    @Override
+    public List<IpStatsDto> getTrendingIps(int limit) {
+        return hitTrends.getTrendingIps(limit);
+    }
+
+    private void validateRange(LocalDateTime start, LocalDateTime end) {
 
         if (start != null && end != null) {
             if (start.isAfter(end)) {
                 throw new ValidationException("Start must be after End");
             }
         }
+    }
+
+    /**
+     * Time up to which every received hit has been written.
+     */
+    private LocalDateTime ingestWatermark() {
+
+        if (hitBuffer.isEnabled()) {
+            return hitBuffer.getWatermark();
+        }
+        if (hitLog.isEnabled()) {
+            return hitLog.getWatermark();
+        }
+        return LocalDateTime.now();
+    }
+
+    private List<HitCount> findCounts(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, Boolean unique, Boolean approximate) {
+
+        List<HitCount> counts = findPrecomputedCounts(start, end, uriIds, unique, approximate);
+        if (counts != null) {
+            return counts;
+        }
+
+        if (!unique && useRollups) {
+            log.info("Get stats from rollups");
+            return hitStatsRepository.findStats(start, end, uriIds);
+        }
 
-        if (uris == null || uris.isEmpty()) {
+        if (uriIds == null) {
             if (unique) {
                 log.info("Get all stats by uniq ip");
                 return hitRepository.findAllStatsByUniqIp(start, end);
@@ -46,13 +330,75 @@ public class HitServiceImpl implements HitService {
                 return hitRepository.findAllStats(start, end);
             }
         } else {
-            if (unique) {
-                log.info("Get all stats by uri and uniq ip");
-                return hitRepository.findStatsByUrisByUniqIp(start, end, uris);
-            } else {
-                log.info("Get all stats by uri");
-                return hitRepository.findStatsByUris(start, end, uris);
+            log.info(unique ? "Get all stats by uri and uniq ip" : "Get all stats by uri");
+            return hitStatsRepository.findRawStats(start, end, uriIds, unique);
+        }
+    }
+
+    /**
+     * Same sources as {@link #findCounts}, but counts read from rollups or hits are passed on
+     * while the database cursor is read instead of being collected first.
+     */
+    private void streamCounts(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, Boolean unique, Boolean approximate,
+                              Consumer<HitCount> consumer) {
+
+        List<HitCount> counts = findPrecomputedCounts(start, end, uriIds, unique, approximate);
+        if (counts != null) {
+            counts.forEach(consumer);
+        } else if (!unique && useRollups) {
+            log.info("Stream stats from rollups");
+            hitStatsRepository.streamStats(start, end, uriIds, true, consumer);
+        } else {
+            log.info("Stream stats from hits");
+            hitStatsRepository.streamRawStats(start, end, uriIds, unique, true, consumer);
+        }
+    }
+
+    /**
+     * Counts from the all-time totals, the sketches or the bitmaps, or null when none of them
+     * can answer the query.
+     */
+    private List<HitCount> findPrecomputedCounts(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, Boolean unique,
+                                                 Boolean approximate) {
+
+        if (uriTotalsService.isEnabled()) {
+            List<HitCount> totals = uriTotalsService.findStats(start, end, uriIds, unique);
+            if (totals != null) {
+                log.info("Get stats from all-time totals");
+                return totals;
             }
         }
+
+        if (unique && approximate && hitSketchService.isEnabled()) {
+            log.info("Get approximate stats by uniq ip");
+            return hitSketchService.getUniqueStats(start, end, uriIds);
+        }
+
+        if (unique && hitBitmapService.isEnabled()) {
+            log.info("Get exact stats by uniq ip from bitmaps");
+            return hitBitmapService.getUniqueStats(start, end, uriIds);
+        }
+        return null;
+    }
+
+    private Hit returnHit(HitDto hitDto) {
+        return HitMapper.returnHit(hitDto, hitDictionary.appId(hitDto.getApp()), hitDictionary.uriId(hitDto.getUri()));
+    }
+
+    private void ingest(List<Hit> hits) {
+
+        hitTrends.add(hits);
+        List<Hit> accepted = hitDeduplicator.filter(hits);
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        if (hitBuffer.isEnabled()) {
+            hitBuffer.offer(accepted);
+        } else if (hitLog.isEnabled()) {
+            hitLog.append(accepted);
+        } else {
+            hitWriter.write(accepted);
+        }
     }
 }
\ No newline at end of file
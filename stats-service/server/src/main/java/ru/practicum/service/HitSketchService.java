@@ -0,0 +1,132 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.model.Hit;
+import ru.practicum.model.HitCount;
+import ru.practicum.model.HitRollup;
+import ru.practicum.repository.HitSketchRepository;
+import ru.practicum.sketch.Hashing;
+import ru.practicum.sketch.HyperLogLog;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static ru.practicum.model.RollupGranularity.DAY;
+
+/**
+ * Approximate unique-ip counts backed by one {@link HyperLogLog} sketch per app, uri and day, and
+ * another per app, uri and month. Whole months in the requested range are answered by merging month
+ * sketches, the whole days around them from day sketches, and the partial days at the edges from raw
+ * hits. A query therefore merges at most about two months of day sketches per uri, however long its range.
+ * <p>
+ * The hashes of a written batch are first added to one in-memory sketch per key, so every stored sketch
+ * is read and rewritten at most once per buffer flush or log replay batch.
+ */
+@Service
+public class HitSketchService {
+
+    private final HitSketchRepository hitSketchRepository;
+    private final boolean enabled;
+
+    public HitSketchService(HitSketchRepository hitSketchRepository,
+                            @Value("${stats.sketches.enabled:false}") boolean enabled) {
+        this.hitSketchRepository = hitSketchRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void load() {
+
+        if (enabled) {
+            hitSketchRepository.backfill(HitSketchRepository.DAYS, "day");
+            hitSketchRepository.backfill(HitSketchRepository.MONTHS, "month");
+        }
+    }
+
+    public void add(List<Hit> hits) {
+
+        if (!enabled) {
+            return;
+        }
+
+        Map<HitRollup, HyperLogLog> days = new TreeMap<>(HitRollup.LOCK_ORDER);
+        Map<HitRollup, HyperLogLog> months = new TreeMap<>(HitRollup.LOCK_ORDER);
+        for (Hit hit : hits) {
+            long hash = Hashing.hash64(hit.getIp());
+            days.computeIfAbsent(new HitRollup(DAY, DAY.floor(hit.getTimestamp()), hit.getAppId(), hit.getUriId()),
+                    k -> new HyperLogLog()).add(hash);
+            // sketch keys carry no granularity, DAY only fixes their lock order
+            months.computeIfAbsent(new HitRollup(DAY, monthFloor(hit.getTimestamp()), hit.getAppId(), hit.getUriId()),
+                    k -> new HyperLogLog()).add(hash);
+        }
+        hitSketchRepository.add(HitSketchRepository.DAYS, days);
+        hitSketchRepository.add(HitSketchRepository.MONTHS, months);
+    }
+
+    /**
+     * @param uriIds uris to count, null for all uris
+     */
+    public List<HitCount> getUniqueStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+
+        LocalDateTime to = end.plusSeconds(1);
+        LocalDateTime monthsFrom = monthCeil(start);
+        LocalDateTime monthsTo = monthFloor(to);
+        Map<List<Integer>, HyperLogLog> sketches = new HashMap<>();
+
+        if (monthsFrom.isBefore(monthsTo)) {
+            hitSketchRepository.mergeSketches(HitSketchRepository.MONTHS, sketches, monthsFrom, monthsTo, uriIds);
+            mergeDays(sketches, start, monthsFrom, uriIds);
+            mergeDays(sketches, monthsTo, to, uriIds);
+        } else {
+            mergeDays(sketches, start, to, uriIds);
+        }
+
+        List<HitCount> result = new ArrayList<>(sketches.size());
+        for (Map.Entry<List<Integer>, HyperLogLog> sketch : sketches.entrySet()) {
+            result.add(new HitCount(sketch.getKey().get(0), sketch.getKey().get(1), sketch.getValue().estimate()));
+        }
+        result.sort(Comparator.comparing(HitCount::getHits).reversed());
+        return result;
+    }
+
+    private void mergeDays(Map<List<Integer>, HyperLogLog> sketches, LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+
+        if (!from.isBefore(to)) {
+            return;
+        }
+
+        LocalDateTime daysFrom = DAY.ceil(from);
+        LocalDateTime daysTo = DAY.floor(to);
+        if (daysFrom.isBefore(daysTo)) {
+            hitSketchRepository.mergeSketches(HitSketchRepository.DAYS, sketches, daysFrom, daysTo, uriIds);
+            if (from.isBefore(daysFrom)) {
+                hitSketchRepository.mergeRawIps(sketches, from, daysFrom, uriIds);
+            }
+            if (daysTo.isBefore(to)) {
+                hitSketchRepository.mergeRawIps(sketches, daysTo, to, uriIds);
+            }
+        } else {
+            hitSketchRepository.mergeRawIps(sketches, from, to, uriIds);
+        }
+    }
+
+    private static LocalDateTime monthFloor(LocalDateTime time) {
+        return time.toLocalDate().withDayOfMonth(1).atStartOfDay();
+    }
+
+    private static LocalDateTime monthCeil(LocalDateTime time) {
+        LocalDateTime floor = monthFloor(time);
+        return floor.equals(time) ? floor : floor.plusMonths(1);
+    }
+}
@@ -0,0 +1,74 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.IpAddresses;
+import ru.practicum.dto.IpStatsDto;
+import ru.practicum.dto.StatsDto;
+import ru.practicum.model.Hit;
+import ru.practicum.sketch.Hashing;
+import ru.practicum.sketch.SlidingHeavyHitters;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory "trending now" view: estimated hit counts of the hottest uris and source ips over the
+ * last {@code window-ms}, kept in fixed-size sliding count-min sketches and never read from hits.
+ * Counts are estimates that may be slightly too high, never too low.
+ */
+@Component
+public class HitTrends {
+
+    private final HitDictionary hitDictionary;
+    private final boolean enabled;
+    private final SlidingHeavyHitters<List<Integer>> uris;
+    private final SlidingHeavyHitters<ByteBuffer> ips;
+
+    public HitTrends(HitDictionary hitDictionary,
+                     @Value("${stats.trending.enabled:true}") boolean enabled,
+                     @Value("${stats.trending.window-ms:300000}") long windowMs,
+                     @Value("${stats.trending.slots:10}") int slots,
+                     @Value("${stats.trending.depth:4}") int depth,
+                     @Value("${stats.trending.width:2048}") int width,
+                     @Value("${stats.trending.capacity:100}") int capacity) {
+        this.hitDictionary = hitDictionary;
+        this.enabled = enabled;
+        this.uris = new SlidingHeavyHitters<>(windowMs, slots, depth, width, capacity);
+        this.ips = new SlidingHeavyHitters<>(windowMs, slots, depth, width, capacity);
+    }
+
+    public void add(List<Hit> hits) {
+
+        if (!enabled) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (Hit hit : hits) {
+            uris.add(List.of(hit.getAppId(), hit.getUriId()), Hashing.mix((long) hit.getAppId() << 32 | hit.getUriId()), now);
+            ips.add(ByteBuffer.wrap(hit.getIp()), Hashing.hash64(hit.getIp()), now);
+        }
+    }
+
+    public List<StatsDto> getTrendingUris(int limit) {
+
+        List<StatsDto> result = new ArrayList<>(limit);
+        for (Map.Entry<List<Integer>, Long> entry : uris.top(limit, System.currentTimeMillis())) {
+            result.add(new StatsDto(hitDictionary.appName(entry.getKey().get(0)), hitDictionary.uriName(entry.getKey().get(1)),
+                    entry.getValue()));
+        }
+        return result;
+    }
+
+    public List<IpStatsDto> getTrendingIps(int limit) {
+
+        List<IpStatsDto> result = new ArrayList<>(limit);
+        for (Map.Entry<ByteBuffer, Long> entry : ips.top(limit, System.currentTimeMillis())) {
+            result.add(new IpStatsDto(IpAddresses.format(entry.getKey().array()), entry.getValue()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.model.Hit;
+import ru.practicum.repository.HitRepository;
+import ru.practicum.repository.HitRollupRepository;
+import ru.practicum.repository.VisitorIdRepository;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Single place where hits reach the database, shared by the synchronous path and the buffer flusher.
+ * <p>
+ * The sketches, bitmaps and all-time totals are read-modify-written per app and uri, so they are
+ * only folded in from the batches of the buffer flusher and the log replayer. In {@link IngestMode#SYNC}
+ * they must stay disabled and a hit costs one insert and one rollup increment.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+
+    private final HitRepository hitRepository;
+    private final HitRollupRepository hitRollupRepository;
+    private final VisitorIdRepository visitorIdRepository;
+    private final HitSketchService hitSketchService;
+    private final HitBitmapService hitBitmapService;
+    private final UriTotalsService uriTotalsService;
+    private final StatsCache statsCache;
+
+    @Value("${stats.ingest.mode:SYNC}")
+    private IngestMode mode;
+
+    @PostConstruct
+    public void checkMode() {
+
+        if (mode == IngestMode.SYNC
+                && (hitSketchService.isEnabled() || hitBitmapService.isEnabled() || uriTotalsService.isEnabled())) {
+            throw new IllegalStateException("stats.sketches, stats.bitmaps and stats.totals are only maintained "
+                    + "with stats.ingest.mode BUFFER or LOG");
+        }
+    }
+
+    @Transactional
+    public void write(List<Hit> hits) {
+
+        hitRepository.saveAll(hits);
+        hitRollupRepository.increment(hits);
+        hitSketchService.add(hits);
+
+        Map<ByteBuffer, Integer> visitorIds = Collections.emptyMap();
+        if (hitBitmapService.isEnabled() || uriTotalsService.isEnabled()) {
+            Set<ByteBuffer> ips = new HashSet<>();
+            for (Hit hit : hits) {
+                ips.add(ByteBuffer.wrap(hit.getIp()));
+            }
+            visitorIds = visitorIdRepository.findOrCreate(ips);
+        }
+        hitBitmapService.add(hits, visitorIds);
+        uriTotalsService.add(hits, visitorIds);
+
+        if (statsCache.isEnabled() && !hits.isEmpty()) {
+            invalidateAfterCommit(hits);
+        }
+    }
+
+    /**
+     * Cached results must only be dropped once the hits are visible, otherwise a concurrent query
+     * could cache the counts without them again.
+     */
+    private void invalidateAfterCommit(List<Hit> hits) {
+
+        LocalDateTime from = hits.get(0).getTimestamp();
+        LocalDateTime to = from;
+        for (Hit hit : hits) {
+            if (hit.getTimestamp().isBefore(from)) {
+                from = hit.getTimestamp();
+            } else if (hit.getTimestamp().isAfter(to)) {
+                to = hit.getTimestamp();
+            }
+        }
+
+        LocalDateTime first = from;
+        LocalDateTime last = to;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                statsCache.invalidate(first, last);
+            }
+        });
+    }
+}
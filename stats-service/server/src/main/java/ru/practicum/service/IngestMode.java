@@ -0,0 +1,7 @@
+package ru.practicum.service;
+
+public enum IngestMode {
+    SYNC,
+    BUFFER,
+    LOG
+}
@@ -0,0 +1,183 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.HitCount;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * Bounded LRU cache of stats query results. A range is closed once it ended {@code closed-after-ms}
+ * before the ingest watermark, the time up to which every received hit has reached the database;
+ * closed ranges are kept for {@code closed-ttl-ms}, until evicted, or until a late hit with an older
+ * timestamp is written into them by this server. The TTL must exceed the lag of a read replica,
+ * whose loads may miss the latest hits, and bounds how long late hits written through other
+ * servers stay invisible. Other ranges are keyed without their end and kept for {@code open-ttl-ms}; a later
+ * request with a later end only reads the hits after the cached end and adds them to the cached
+ * counts. Unique counts cannot be added up, so open unique ranges are only kept for
+ * {@code unique-open-ttl-ms}.
+ */
+@Component
+public class StatsCache {
+
+    private final boolean enabled;
+    private final long openTtlMs;
+    private final long uniqueOpenTtlMs;
+    private final Duration closedAfter;
+    private final long closedTtlMs;
+    private final Map<Key, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public StatsCache(MeterRegistry meterRegistry,
+                      @Value("${stats.cache.enabled:true}") boolean enabled,
+                      @Value("${stats.cache.max-entries:1000}") int maxEntries,
+                      @Value("${stats.cache.open-ttl-ms:5000}") long openTtlMs,
+                      @Value("${stats.cache.unique-open-ttl-ms:1000}") long uniqueOpenTtlMs,
+                      @Value("${stats.cache.closed-after-ms:60000}") long closedAfterMs,
+                      @Value("${stats.cache.closed-ttl-ms:600000}") long closedTtlMs) {
+        this.enabled = enabled;
+        this.openTtlMs = openTtlMs;
+        this.uniqueOpenTtlMs = uniqueOpenTtlMs;
+        this.closedAfter = Duration.ofMillis(closedAfterMs);
+        this.closedTtlMs = closedTtlMs;
+        this.hits = meterRegistry.counter("stats.query.cache.hits");
+        this.misses = meterRegistry.counter("stats.query.cache.misses");
+        this.evictions = meterRegistry.counter("stats.query.cache.evictions");
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        meterRegistry.gauge("stats.query.cache.size", Tags.empty(), this, StatsCache::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param watermark every hit received before it has been written
+     * @param loader    counts a range, called for misses and for the tail of open ranges
+     */
+    public List<HitCount> get(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique, boolean approximate,
+                              LocalDateTime watermark, BiFunction<LocalDateTime, LocalDateTime, List<HitCount>> loader) {
+
+        boolean closed = end.isBefore(watermark.minus(closedAfter));
+        Key key = new Key(start, closed ? end : null, normalize(uriIds), unique, approximate);
+        long now = System.currentTimeMillis();
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt <= now) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+
+        if (entry != null) {
+            if (closed || end.equals(entry.end)) {
+                hits.increment();
+                return entry.counts;
+            }
+            if (end.isAfter(entry.end)) {
+                hits.increment();
+                return unique ? entry.counts : merge(entry.counts, loader.apply(entry.end.plusSeconds(1), end));
+            }
+        }
+
+        misses.increment();
+        List<HitCount> counts = loader.apply(start, end);
+        synchronized (entries) {
+            entries.put(key, new Entry(List.copyOf(counts), end, now + (closed ? closedTtlMs : unique ? uniqueOpenTtlMs : openTtlMs)));
+        }
+        return counts;
+    }
+
+    /**
+     * Drops the closed ranges that overlap hits written with timestamps between {@code from} and
+     * {@code to}. Only hits written by this server are seen.
+     */
+    public void invalidate(LocalDateTime from, LocalDateTime to) {
+
+        if (!from.isBefore(LocalDateTime.now().minus(closedAfter))) {
+            return;
+        }
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.end != null && !key.start.isAfter(to) && !key.end.isBefore(from));
+        }
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static List<Integer> normalize(List<Integer> uriIds) {
+
+        if (uriIds == null) {
+            return null;
+        }
+        return List.copyOf(new TreeSet<>(uriIds));
+    }
+
+    /**
+     * Adds the counts of the tail to the cached ones, sorted by hits descending.
+     */
+    static List<HitCount> merge(List<HitCount> cached, List<HitCount> tail) {
+
+        if (tail.isEmpty()) {
+            return cached;
+        }
+
+        Map<List<Integer>, Long> totals = new HashMap<>();
+        for (HitCount count : cached) {
+            totals.merge(List.of(count.getAppId(), count.getUriId()), count.getHits(), Long::sum);
+        }
+        for (HitCount count : tail) {
+            totals.merge(List.of(count.getAppId(), count.getUriId()), count.getHits(), Long::sum);
+        }
+
+        List<HitCount> result = new ArrayList<>(totals.size());
+        for (Map.Entry<List<Integer>, Long> total : totals.entrySet()) {
+            result.add(new HitCount(total.getKey().get(0), total.getKey().get(1), total.getValue()));
+        }
+        result.sort(Comparator.comparing(HitCount::getHits).reversed());
+        return result;
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Key {
+
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final List<Integer> uriIds;
+        private final boolean unique;
+        private final boolean approximate;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+
+        private final List<HitCount> counts;
+        private final LocalDateTime end;
+        private final long expiresAt;
+    }
+}
@@ -0,0 +1,64 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latency and size meters of the ingest and query paths. Timers and summaries publish percentile
+ * histograms, so tail latency can be aggregated across instances in Prometheus.
+ */
+@Component
+public class StatsMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final String ingestMode;
+
+    public StatsMetrics(MeterRegistry meterRegistry,
+                        @Value("${stats.ingest.mode:SYNC}") IngestMode ingestMode) {
+        this.meterRegistry = meterRegistry;
+        this.ingestMode = ingestMode.name();
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * @param operation hit or hits
+     */
+    public void recordIngest(Timer.Sample sample, String operation, int hits) {
+
+        Tags tags = Tags.of("operation", operation, "mode", ingestMode);
+        sample.stop(Timer.builder("stats.ingest")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        DistributionSummary.builder("stats.ingest.batch.size")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(hits);
+    }
+
+    /**
+     * @param operation stats, stream, top or histogram
+     * @param filtered  whether the query was limited to some uris
+     */
+    public void recordQuery(Timer.Sample sample, String operation, boolean unique, boolean filtered, int rows) {
+
+        Tags tags = Tags.of("operation", operation, "unique", String.valueOf(unique), "uris", String.valueOf(filtered));
+        sample.stop(Timer.builder("stats.query")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        DistributionSummary.builder("stats.query.rows")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(rows);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.model.Hit;
+import ru.practicum.model.HitCount;
+import ru.practicum.model.UriTotal;
+import ru.practicum.repository.UriTotalsRepository;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All-time hit and unique-ip counters per uri, folded in from every buffer flush or log replay batch.
+ * A query whose range covers the whole life of every requested uri is answered from them without
+ * touching hits.
+ */
+@Service
+public class UriTotalsService {
+
+    private final UriTotalsRepository uriTotalsRepository;
+    private final boolean enabled;
+
+    public UriTotalsService(UriTotalsRepository uriTotalsRepository,
+                            @Value("${stats.totals.enabled:false}") boolean enabled) {
+        this.uriTotalsRepository = uriTotalsRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param visitorIds visitor ids of all ips of the hits
+     */
+    public void add(List<Hit> hits, Map<ByteBuffer, Integer> visitorIds) {
+
+        if (enabled) {
+            uriTotalsRepository.increment(hits, visitorIds);
+        }
+    }
+
+    /**
+     * @param uriIds uris to count, null for all uris
+     * @return the counts, or null when some uri has hits outside of the range
+     */
+    public List<HitCount> findStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique) {
+
+        if (!uriTotalsRepository.coversRange(start, end, uriIds)) {
+            return null;
+        }
+
+        List<UriTotal> totals = uriTotalsRepository.findTotals(uriIds);
+        List<HitCount> result = new ArrayList<>(totals.size());
+        for (UriTotal total : totals) {
+            // a batch folded in after the check may have moved a uri past the range
+            if (start != null && total.getFirstHit().isBefore(start) || end != null && total.getLastHit().isAfter(end)) {
+                return null;
+            }
+            result.add(new HitCount(total.getAppId(), total.getUriId(), unique ? total.getUniqueHits() : total.getHits()));
+        }
+        result.sort(Comparator.comparing(HitCount::getHits).reversed());
+        return result;
+    }
+}
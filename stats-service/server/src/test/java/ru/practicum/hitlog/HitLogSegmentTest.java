@@ -0,0 +1,155 @@
+package ru.practicum.hitlog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.IpAddresses;
+import ru.practicum.model.Hit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitLogSegmentTest {
+
+    private static final int SIZE = 10 * HitLogSegment.RECORD_SIZE + 7;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void createRoundsSizeDownToWholeRecords() throws IOException {
+
+        try (HitLogSegment segment = HitLogSegment.create(dir, 3, SIZE)) {
+            assertEquals(10, segment.getCapacity());
+            assertEquals(3, segment.getIndex());
+            assertEquals(0, segment.findEnd());
+        }
+    }
+
+    @Test
+    void writtenHitsAreReadBack() throws IOException {
+
+        try (HitLogSegment segment = HitLogSegment.create(dir, 0, SIZE)) {
+            segment.write(0, hit(1, "10.0.0.1", 0));
+            segment.write(1, hit(2, "2001:db8::1", 1));
+
+            assertHit(segment.read(0), 1, "10.0.0.1", 0);
+            assertHit(segment.read(1), 2, "2001:db8::1", 1);
+            assertNull(segment.read(2));
+            assertEquals(2, segment.findEnd());
+        }
+    }
+
+    @Test
+    void reopenedSegmentResumesAfterLastRecord() throws IOException {
+
+        Path path;
+        try (HitLogSegment segment = HitLogSegment.create(dir, 7, SIZE)) {
+            for (int slot = 0; slot < 4; slot++) {
+                segment.write(slot, hit(slot, "10.0.0." + slot, slot));
+            }
+            segment.force();
+            path = segmentPath();
+        }
+
+        assertTrue(HitLogSegment.isSegment(path));
+        assertEquals(7, HitLogSegment.index(path));
+        try (HitLogSegment segment = HitLogSegment.open(path)) {
+            assertEquals(4, segment.findEnd());
+            assertHit(segment.read(3), 3, "10.0.0.3", 3);
+        }
+    }
+
+    @Test
+    void tornRecordEndsWrittenPart() throws IOException {
+
+        Path path;
+        try (HitLogSegment segment = HitLogSegment.create(dir, 0, SIZE)) {
+            for (int slot = 0; slot < 3; slot++) {
+                segment.write(slot, hit(slot, "10.0.0." + slot, slot));
+            }
+            path = segmentPath();
+        }
+
+        // a crash in the middle of slot 1: the checksum is there, part of the ip is not
+        overwrite(path, HitLogSegment.RECORD_SIZE + 20, new byte[]{0, 0, 0, 0});
+
+        try (HitLogSegment segment = HitLogSegment.open(path)) {
+            assertHit(segment.read(0), 0, "10.0.0.0", 0);
+            assertNull(segment.read(1));
+            assertEquals(1, segment.findEnd());
+        }
+    }
+
+    @Test
+    void recordWithoutChecksumIsNotWritten() throws IOException {
+
+        Path path;
+        try (HitLogSegment segment = HitLogSegment.create(dir, 0, SIZE)) {
+            segment.write(0, hit(1, "10.0.0.1", 0));
+            path = segmentPath();
+        }
+
+        // a crash before the checksum, which is written last, reached the file
+        overwrite(path, 0, new byte[]{0, 0, 0, 0});
+
+        try (HitLogSegment segment = HitLogSegment.open(path)) {
+            assertNull(segment.read(0));
+            assertEquals(0, segment.findEnd());
+        }
+    }
+
+    @Test
+    void deleteRemovesFile() throws IOException {
+
+        HitLogSegment segment = HitLogSegment.create(dir, 0, SIZE);
+        Path path = segmentPath();
+
+        segment.delete();
+
+        assertFalse(Files.exists(path));
+    }
+
+    private Path segmentPath() throws IOException {
+
+        try (Stream<Path> paths = Files.list(dir)) {
+            return paths.filter(HitLogSegment::isSegment).findFirst().orElseThrow();
+        }
+    }
+
+    private static void overwrite(Path path, long position, byte[] bytes) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+
+    private static Hit hit(int uriId, String ip, int seconds) {
+
+        return Hit.builder()
+                .appId(1)
+                .uriId(uriId)
+                .ip(IpAddresses.parse(ip))
+                .timestamp(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(seconds))
+                .build();
+    }
+
+    private static void assertHit(Hit hit, int uriId, String ip, int seconds) {
+
+        assertEquals(1, hit.getAppId());
+        assertEquals(uriId, hit.getUriId());
+        assertArrayEquals(IpAddresses.parse(ip), hit.getIp());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(seconds), hit.getTimestamp());
+    }
+}
@@ -0,0 +1,109 @@
+package ru.practicum.repository;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.model.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitStatsRepositoryTest {
+
+    @Test
+    void splitAlignedRangeIntoDays() {
+
+        List<HitStatsRepository.Segment> segments = split(
+                LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 1, 3, 0, 0));
+
+        assertEquals(1, segments.size());
+        assertSegment(segments.get(0), RollupGranularity.DAY, LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 1, 3, 0, 0));
+    }
+
+    @Test
+    void splitUnalignedEdgesIntoFinerBuckets() {
+
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 10, 30, 15);
+        LocalDateTime to = LocalDateTime.of(2024, 1, 3, 5, 20, 10);
+
+        List<HitStatsRepository.Segment> segments = split(from, to);
+
+        assertEquals(7, segments.size());
+        assertSegment(segments.get(0), null, from, LocalDateTime.of(2024, 1, 1, 10, 31));
+        assertSegment(segments.get(1), RollupGranularity.MINUTE, LocalDateTime.of(2024, 1, 1, 10, 31), LocalDateTime.of(2024, 1, 1, 11, 0));
+        assertSegment(segments.get(2), RollupGranularity.HOUR, LocalDateTime.of(2024, 1, 1, 11, 0), LocalDateTime.of(2024, 1, 2, 0, 0));
+        assertSegment(segments.get(3), RollupGranularity.DAY, LocalDateTime.of(2024, 1, 2, 0, 0), LocalDateTime.of(2024, 1, 3, 0, 0));
+        assertSegment(segments.get(4), RollupGranularity.HOUR, LocalDateTime.of(2024, 1, 3, 0, 0), LocalDateTime.of(2024, 1, 3, 5, 0));
+        assertSegment(segments.get(5), RollupGranularity.MINUTE, LocalDateTime.of(2024, 1, 3, 5, 0), LocalDateTime.of(2024, 1, 3, 5, 20));
+        assertSegment(segments.get(6), null, LocalDateTime.of(2024, 1, 3, 5, 20), to);
+    }
+
+    @Test
+    void splitCoversRangeWithoutGapsOrOverlaps() {
+
+        LocalDateTime from = LocalDateTime.of(2023, 12, 31, 23, 59, 59);
+        LocalDateTime to = LocalDateTime.of(2024, 3, 1, 0, 0, 1);
+
+        List<HitStatsRepository.Segment> segments = split(from, to);
+
+        assertEquals(from, segments.get(0).from);
+        for (int i = 1; i < segments.size(); i++) {
+            assertEquals(segments.get(i - 1).to, segments.get(i).from);
+        }
+        assertEquals(to, segments.get(segments.size() - 1).to);
+        for (HitStatsRepository.Segment segment : segments) {
+            assertTrue(segment.from.isBefore(segment.to));
+            if (segment.granularity != null) {
+                assertEquals(segment.from, segment.granularity.floor(segment.from));
+                assertEquals(segment.to, segment.granularity.floor(segment.to));
+            }
+        }
+    }
+
+    @Test
+    void splitRangeAcrossMidnightIntoMinutes() {
+
+        List<HitStatsRepository.Segment> segments = split(
+                LocalDateTime.of(2024, 1, 1, 23, 30), LocalDateTime.of(2024, 1, 2, 0, 30));
+
+        assertEquals(1, segments.size());
+        assertSegment(segments.get(0), RollupGranularity.MINUTE, LocalDateTime.of(2024, 1, 1, 23, 30), LocalDateTime.of(2024, 1, 2, 0, 30));
+    }
+
+    @Test
+    void splitRangeWithinOneMinuteReadsHitsOnly() {
+
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 10, 30, 15);
+        LocalDateTime to = LocalDateTime.of(2024, 1, 1, 10, 30, 45);
+
+        List<HitStatsRepository.Segment> segments = split(from, to);
+
+        assertEquals(1, segments.size());
+        assertSegment(segments.get(0), null, from, to);
+    }
+
+    @Test
+    void splitEmptyRange() {
+
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 10, 30);
+
+        assertTrue(split(time, time).isEmpty());
+    }
+
+    private static List<HitStatsRepository.Segment> split(LocalDateTime from, LocalDateTime to) {
+
+        List<HitStatsRepository.Segment> segments = new ArrayList<>();
+        HitStatsRepository.split(from, to, 0, segments);
+        return segments;
+    }
+
+    private static void assertSegment(HitStatsRepository.Segment segment, RollupGranularity granularity,
+                                      LocalDateTime from, LocalDateTime to) {
+
+        assertEquals(granularity, segment.granularity);
+        assertEquals(from, segment.from);
+        assertEquals(to, segment.to);
+    }
+}
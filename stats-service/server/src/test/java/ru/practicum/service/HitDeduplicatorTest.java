@@ -0,0 +1,89 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.IpAddresses;
+import ru.practicum.model.Hit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitDeduplicatorTest {
+
+    private static final long WINDOW = 30_000;
+
+    private final HitDeduplicator deduplicator = new HitDeduplicator(new SimpleMeterRegistry(), true, WINDOW, 1_000, 0.001);
+
+    @Test
+    void repeatsWithinBatchAndWindowAreDropped() {
+
+        Hit first = hit(1, "10.0.0.1");
+        Hit otherUri = hit(2, "10.0.0.1");
+        Hit otherIp = hit(1, "10.0.0.2");
+
+        List<Hit> kept = deduplicator.filter(List.of(first, otherUri, hit(1, "10.0.0.1"), otherIp), 0);
+
+        assertEquals(3, kept.size());
+        assertSame(first, kept.get(0));
+        assertSame(otherUri, kept.get(1));
+        assertSame(otherIp, kept.get(2));
+        assertTrue(deduplicator.filter(List.of(hit(1, "10.0.0.1")), WINDOW - 1).isEmpty());
+    }
+
+    @Test
+    void repeatInNextWindowIsDropped() {
+
+        deduplicator.filter(List.of(hit(1, "10.0.0.1")), 0);
+
+        assertTrue(deduplicator.filter(List.of(hit(1, "10.0.0.1")), WINDOW + 1).isEmpty());
+    }
+
+    @Test
+    void repeatIsKeptOnceBothFiltersRotatedOut() {
+
+        deduplicator.filter(List.of(hit(1, "10.0.0.1")), 0);
+        deduplicator.filter(List.of(hit(2, "10.0.0.1")), WINDOW);
+
+        assertEquals(1, deduplicator.filter(List.of(hit(1, "10.0.0.1")), 2 * WINDOW).size());
+    }
+
+    @Test
+    void repeatsOfEveryWindowDoNotExtendSuppression() {
+
+        deduplicator.filter(List.of(hit(1, "10.0.0.1")), 0);
+
+        assertTrue(deduplicator.filter(List.of(hit(1, "10.0.0.1")), WINDOW + 1).isEmpty());
+        assertEquals(1, deduplicator.filter(List.of(hit(1, "10.0.0.1")), 2 * WINDOW + 1).size());
+    }
+
+    @Test
+    void rotationAfterIdleWindowsClearsBothFilters() {
+
+        deduplicator.filter(List.of(hit(1, "10.0.0.1")), WINDOW);
+
+        assertEquals(1, deduplicator.filter(List.of(hit(1, "10.0.0.1")), 3 * WINDOW).size());
+    }
+
+    @Test
+    void disabledDeduplicatorPassesHitsThrough() {
+
+        HitDeduplicator disabled = new HitDeduplicator(new SimpleMeterRegistry(), false, WINDOW, 1_000, 0.001);
+        List<Hit> hits = List.of(hit(1, "10.0.0.1"), hit(1, "10.0.0.1"));
+
+        assertSame(hits, disabled.filter(hits, 0));
+    }
+
+    private static Hit hit(int uriId, String ip) {
+
+        return Hit.builder()
+                .appId(1)
+                .uriId(uriId)
+                .ip(IpAddresses.parse(ip))
+                .timestamp(LocalDateTime.of(2024, 1, 1, 0, 0))
+                .build();
+    }
+}
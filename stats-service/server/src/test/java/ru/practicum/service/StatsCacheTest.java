@@ -0,0 +1,133 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.model.HitCount;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StatsCacheTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final StatsCache cache = new StatsCache(new SimpleMeterRegistry(), true, 100, 60_000, 60_000, 60_000, 60_000);
+    private final List<LocalDateTime[]> loads = new ArrayList<>();
+
+    @Test
+    void mergeAddsTailToCachedCounts() {
+
+        List<HitCount> merged = StatsCache.merge(
+                List.of(new HitCount(1, 10, 5L), new HitCount(1, 11, 3L)),
+                List.of(new HitCount(1, 11, 4L), new HitCount(2, 10, 1L)));
+
+        assertEquals(3, merged.size());
+        assertCount(merged.get(0), 1, 11, 7);
+        assertCount(merged.get(1), 1, 10, 5);
+        assertCount(merged.get(2), 2, 10, 1);
+    }
+
+    @Test
+    void mergeWithEmptyTailKeepsCachedCounts() {
+
+        List<HitCount> cached = List.of(new HitCount(1, 10, 5L));
+
+        assertSame(cached, StatsCache.merge(cached, List.of()));
+    }
+
+    @Test
+    void closedRangeIsLoadedOnce() {
+
+        LocalDateTime end = START.plusDays(1);
+        LocalDateTime watermark = end.plusDays(1);
+
+        cache.get(START, end, List.of(10), false, false, watermark, this::load);
+        List<HitCount> counts = cache.get(START, end, List.of(10), false, false, watermark, this::load);
+
+        assertEquals(1, loads.size());
+        assertCount(counts.get(0), 1, 10, 1);
+    }
+
+    @Test
+    void closedRangeExpiresAfterTtl() {
+
+        StatsCache expiring = new StatsCache(new SimpleMeterRegistry(), true, 100, 60_000, 60_000, 60_000, 0);
+        LocalDateTime end = START.plusDays(1);
+        LocalDateTime watermark = end.plusDays(1);
+
+        expiring.get(START, end, List.of(10), false, false, watermark, this::load);
+        expiring.get(START, end, List.of(10), false, false, watermark, this::load);
+
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    void openRangeLoadsOnlyTheTail() {
+
+        LocalDateTime end = START.plusDays(1);
+        LocalDateTime laterEnd = end.plusMinutes(1);
+
+        cache.get(START, end, null, false, false, end, this::load);
+        List<HitCount> counts = cache.get(START, laterEnd, null, false, false, laterEnd, this::load);
+
+        assertEquals(2, loads.size());
+        assertEquals(end.plusSeconds(1), loads.get(1)[0]);
+        assertEquals(laterEnd, loads.get(1)[1]);
+        assertCount(counts.get(0), 1, 10, 2);
+    }
+
+    @Test
+    void openUniqueRangeIsNotAddedUp() {
+
+        LocalDateTime end = START.plusDays(1);
+        LocalDateTime laterEnd = end.plusMinutes(1);
+
+        cache.get(START, end, null, true, false, end, this::load);
+        List<HitCount> counts = cache.get(START, laterEnd, null, true, false, laterEnd, this::load);
+
+        assertEquals(1, loads.size());
+        assertCount(counts.get(0), 1, 10, 1);
+    }
+
+    @Test
+    void lateHitsInvalidateClosedRanges() {
+
+        LocalDateTime end = START.plusDays(1);
+        LocalDateTime watermark = end.plusDays(1);
+
+        cache.get(START, end, null, false, false, watermark, this::load);
+        cache.invalidate(START.plusHours(1), START.plusHours(2));
+        cache.get(START, end, null, false, false, watermark, this::load);
+
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    void uriOrderDoesNotMatter() {
+
+        LocalDateTime end = START.plusDays(1);
+        LocalDateTime watermark = end.plusDays(1);
+
+        cache.get(START, end, List.of(10, 11), false, false, watermark, this::load);
+        cache.get(START, end, List.of(11, 10, 10), false, false, watermark, this::load);
+
+        assertEquals(1, loads.size());
+    }
+
+    private List<HitCount> load(LocalDateTime from, LocalDateTime to) {
+
+        loads.add(new LocalDateTime[]{from, to});
+        return List.of(new HitCount(1, 10, 1L));
+    }
+
+    private static void assertCount(HitCount count, int appId, int uriId, long hits) {
+
+        assertEquals(appId, count.getAppId());
+        assertEquals(uriId, count.getUriId());
+        assertEquals(hits, count.getHits());
+    }
+}